@@ -0,0 +1,92 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Deterministic synthetic catalog: titles built from a word list, a skewed author
+// population (a few prolific authors, a long tail), years 1800-2024 and mixed statuses.
+// Run it directly to write a books file:
+//   java -cp benchmarks/target/benchmarks.jar library.CatalogGenerator <count> <path>
+class CatalogGenerator {
+    private static final String[] WORDS = {
+            "The", "Lord", "Rings", "Farm", "Great", "Shadow", "River", "House", "Winter", "Garden",
+            "Night", "Empire", "Silent", "Secret", "Last", "Journey", "Stone", "Glass", "Iron", "Light",
+            "Sea", "City", "Fire", "Song", "Time", "War", "Peace", "King", "Queen", "Road"};
+
+    private final List<Book> books;
+    private final Random random;
+
+    CatalogGenerator(int count, long seed) {
+        random = new Random(seed);
+        Status[] statuses = Status.values();
+        int authors = Math.max(1, count / 20);
+        books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Squaring a uniform value skews picks towards the low author numbers
+            double u = random.nextDouble();
+            String author = "Author " + (int) (u * u * authors);
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            books.add(new Book(author, title, 1800 + random.nextInt(225), statuses[random.nextInt(statuses.length)]));
+        }
+    }
+
+    List<Book> books() {
+        return books;
+    }
+
+    // Filled through addBook, the one way every implementation can build a Library
+    Library newLibrary() {
+        Library library = new Library();
+        for (Book book : books) {
+            library.addBook(book);
+        }
+        return library;
+    }
+
+    // One "author,title,year,STATUS" line per book, the format LibraryApp loads
+    void write(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            for (Book book : books) {
+                out.write(book.getAuthor() + "," + book.getTitle() + "," + book.getYearOfPublish() + ","
+                        + book.getStatus().name());
+                out.newLine();
+            }
+        }
+    }
+
+    List<String> existingTitles(int count) {
+        List<String> titles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            titles.add(books.get(random.nextInt(books.size())).getTitle());
+        }
+        return titles;
+    }
+
+    List<String> missingTitles(int count) {
+        List<String> titles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            titles.add("Missing " + random.nextInt());
+        }
+        return titles;
+    }
+
+    List<String> existingAuthors(int count) {
+        List<String> authors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            authors.add(books.get(random.nextInt(books.size())).getAuthor());
+        }
+        return authors;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java library.CatalogGenerator <count> <path>");
+            return;
+        }
+        new CatalogGenerator(Integer.parseInt(args[0]), 42).write(Paths.get(args[1]));
+    }
+}
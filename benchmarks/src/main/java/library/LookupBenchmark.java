@@ -0,0 +1,64 @@
+package library;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Title and author lookups against a catalog of the given size. Each call takes the next
+// key from a fixed set, so neither the JIT nor the caches see one key over and over.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LookupBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int books;
+
+    private Library library;
+    private String[] hits;
+    private String[] misses;
+    private String[] authors;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        CatalogGenerator catalog = new CatalogGenerator(books, 42);
+        library = catalog.newLibrary();
+        hits = toArray(catalog.existingTitles(KEYS));
+        misses = toArray(catalog.missingTitles(KEYS));
+        authors = toArray(catalog.existingAuthors(KEYS));
+    }
+
+    @Benchmark
+    public Object searchBookByTitleHit() {
+        return library.searchBookByTitle(hits[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Object searchBookByTitleMiss() {
+        return library.searchBookByTitle(misses[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Object getBooksByAuthor() {
+        return library.getBooksByAuthor(authors[next++ & (KEYS - 1)]);
+    }
+
+    private static String[] toArray(List<String> keys) {
+        return keys.toArray(new String[0]);
+    }
+}
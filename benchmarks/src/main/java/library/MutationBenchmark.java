@@ -0,0 +1,83 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Operations that change the catalog. Every measured invocation starts from a freshly filled
+// Library of the given size, built outside the timed region, so addBook and deleteBook are
+// the cost of one call at that size and sortBooksByYear always sorts the generated order.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MutationBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int books;
+
+    private CatalogGenerator catalog;
+    private List<Book> added;
+    private List<String> deleted;
+    private Library library;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        catalog = new CatalogGenerator(books, 42);
+        added = new CatalogGenerator(BATCH, 7).books();
+        // Distinct titles, so every delete finds its book
+        List<Book> shuffled = new ArrayList<>(catalog.books());
+        Collections.shuffle(shuffled, new Random(7));
+        deleted = new ArrayList<>(BATCH);
+        for (Book book : shuffled.subList(0, Math.min(BATCH, shuffled.size()))) {
+            deleted.add(book.getTitle());
+        }
+    }
+
+    // In single-shot mode an iteration is one invocation
+    @Setup(Level.Iteration)
+    public void fill() {
+        library = catalog.newLibrary();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addBook() {
+        for (Book book : added) {
+            library.addBook(book);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean deleteBook() {
+        boolean all = true;
+        for (String title : deleted) {
+            all &= library.deleteBook(title);
+        }
+        return all;
+    }
+
+    @Benchmark
+    public void sortBooksByYear() {
+        library.sortBooksByYear();
+    }
+}
@@ -0,0 +1,83 @@
+package library;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same catalog loaded by CatalogLoader from a books file and restored from a snapshot,
+// alone and followed by the first prefix and substring queries, which pay for whatever the
+// load left to build
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CatalogLoadBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int books;
+
+    private Path csv;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        CatalogGenerator catalog = new CatalogGenerator(books, 42);
+        csv = Files.createTempFile("books", ".csv");
+        catalog.write(csv);
+        snapshot = Files.createTempFile("books", ".snap");
+        catalog.newLibrary().saveSnapshot(snapshot.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Object catalogLoader() throws IOException {
+        Library library = new Library();
+        CatalogLoader.load(csv.toString(), library);
+        return library;
+    }
+
+    @Benchmark
+    public Object loadSnapshot() throws IOException {
+        Library library = new Library();
+        library.loadSnapshot(snapshot.toString());
+        return library;
+    }
+
+    @Benchmark
+    public Object catalogLoaderThenSearch() throws IOException {
+        Library library = new Library();
+        CatalogLoader.load(csv.toString(), library);
+        return firstSearches(library);
+    }
+
+    @Benchmark
+    public Object loadSnapshotThenSearch() throws IOException {
+        Library library = new Library();
+        library.loadSnapshot(snapshot.toString());
+        return firstSearches(library);
+    }
+
+    private static int firstSearches(Library library) {
+        return library.searchTitlesByPrefix("iron", 10).size() + library.searchTitlesContaining("ron 12", 10).size();
+    }
+}
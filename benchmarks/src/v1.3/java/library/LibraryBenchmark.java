@@ -0,0 +1,592 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Timing harness for the Library in library-1.3, including the parts that only exist
+// there (bulk load, snapshots, concurrency). After building the benchmarks module, run
+//   java -Xmx4g -cp benchmarks/target/benchmarks.jar library.LibraryBenchmark
+class LibraryBenchmark {
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        benchmarkLoad();
+        benchmarkRestore();
+        benchmarkConcurrentReads();
+        benchmarkPartialSearch();
+        benchmarkFootprint();
+        benchmarkFilters();
+        benchmarkQueryCache();
+        benchmarkMetricsOverhead();
+        benchmarkSharding();
+        benchmarkOffHeap();
+        benchmarkSync();
+        benchmarkCopies();
+        benchmarkAsyncWrites();
+    }
+
+    // Load time should grow linearly with the catalog size, i.e. ns/book stays flat
+    private static void benchmarkLoad() {
+        System.out.println("=== Load ===");
+        System.out.printf("%10s %14s %12s %14s %12s%n", "books", "addBook ms", "ns/book", "addAll ms", "ns/book");
+        for (int size : SIZES) {
+            List<Book> books = catalog(size);
+            long perBook = time(() -> {
+                Library library = new Library();
+                for (Book book : books) {
+                    library.addBook(book);
+                }
+            });
+            long bulk = time(() -> new Library().addAll(books));
+            System.out.printf("%10d %14.1f %12d %14.1f %12d%n",
+                    size, perBook / 1e6, perBook / size, bulk / 1e6, bulk / size);
+        }
+    }
+
+    // Restoring from a binary snapshot versus parsing the same catalog as CSV
+    private static void benchmarkRestore() throws IOException {
+        System.out.println("=== Restore ===");
+        System.out.printf("%10s %14s %14s %14s %16s%n",
+                "books", "CSV load ms", "snapshot ms", "decode ms", "snapshot bytes");
+        for (int size : SIZES) {
+            Library source = new Library();
+            source.addAll(catalog(size));
+            Path csv = Files.createTempFile("books", ".csv");
+            Path snapshot = Files.createTempFile("books", ".snap");
+            try {
+                writeCsv(source, csv);
+                source.saveSnapshot(snapshot.toString());
+                long csvLoad = time(() -> {
+                    try {
+                        CatalogLoader.load(csv.toString(), new Library());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                long restore = time(() -> {
+                    try {
+                        new Library().loadSnapshot(snapshot.toString());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                // Decoding alone, without rebuilding the Library indexes
+                long decode = time(() -> {
+                    try {
+                        LibrarySnapshot.read(snapshot);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                System.out.printf("%10d %14.1f %14.1f %14.1f %16d%n",
+                        size, csvLoad / 1e6, restore / 1e6, decode / 1e6, Files.size(snapshot));
+            } finally {
+                Files.deleteIfExists(csv);
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    // Lookup throughput with 1, 4 and 16 reader threads, alone and next to a writer thread
+    private static void benchmarkConcurrentReads() throws InterruptedException {
+        System.out.println("=== Concurrent reads (100000 books) ===");
+        System.out.printf("%10s %18s %22s%n", "readers", "lookups/s", "lookups/s + 1 writer");
+        List<Book> books = catalog(100_000);
+        for (int readers : new int[]{1, 4, 16}) {
+            Library library = new Library();
+            library.addAll(books);
+            long alone = runReaders(library, books, readers, false);
+            long withWriter = runReaders(library, books, readers, true);
+            System.out.printf("%10d %18d %22d%n", readers, alone, withWriter);
+        }
+    }
+
+    // Prefix and substring queries over 1M titles and authors, first 20 hits each
+    private static void benchmarkPartialSearch() {
+        System.out.println("=== Partial search (1000000 books, limit 20) ===");
+        System.out.printf("%-34s %12s %8s%n", "query", "us/query", "hits");
+        Library library = new Library();
+        library.addAll(catalog(1_000_000));
+        String[][] queries = {
+                {"title prefix", "the lord"}, {"title prefix", "winter garden 99"},
+                {"title contains", "ord rin"}, {"title contains", "garden 12345"},
+                {"title contains", "no such words"}, {"title contains", "e"},
+                {"author prefix", "author 12"}, {"author contains", "or 4999"}};
+        for (String[] query : queries) {
+            int[] hits = new int[1];
+            long nanos = time(() -> {
+                String text = query[1];
+                switch (query[0]) {
+                    case "title prefix":
+                        hits[0] = library.searchTitlesByPrefix(text, 20).size();
+                        break;
+                    case "title contains":
+                        hits[0] = library.searchTitlesContaining(text, 20).size();
+                        break;
+                    case "author prefix":
+                        hits[0] = library.searchAuthorsByPrefix(text, 20).size();
+                        break;
+                    default:
+                        hits[0] = library.searchAuthorsContaining(text, 20).size();
+                }
+            });
+            System.out.printf("%-34s %12.1f %8d%n", query[0] + " '" + query[1] + "'", nanos / 1e3, hits[0]);
+        }
+    }
+
+    // Retained heap of 1M books in the linked Library versus the column-wise ColumnarLibrary,
+    // each with its lookup indexes; the generated Book list is dropped before measuring
+    private static void benchmarkFootprint() {
+        System.out.println("=== Heap footprint (1000000 books) ===");
+        System.out.printf("%-18s %12s %12s%n", "storage", "MB", "bytes/book");
+        long before = usedHeap();
+        Library library = new Library();
+        library.addAll(catalog(1_000_000));
+        long linked = usedHeap() - before;
+        System.out.printf("%-18s %12.1f %12d%n", "Library", linked / 1e6, linked / library.size());
+        library = null;
+
+        before = usedHeap();
+        ColumnarLibrary columnar = new ColumnarLibrary();
+        columnar.addAll(catalog(1_000_000));
+        long columns = usedHeap() - before;
+        System.out.printf("%-18s %12.1f %12d%n", "ColumnarLibrary", columns / 1e6, columns / columnar.size());
+    }
+
+    // Status counts and filters combining status with author and year conditions
+    private static void benchmarkFilters() {
+        System.out.println("=== Filters (1000000 books) ===");
+        System.out.printf("%-34s %12s %10s%n", "filter", "us/query", "matches");
+        Library library = new Library();
+        library.addAll(catalog(1_000_000));
+        Object[][] filters = {
+                {"BORROWED", new BookFilter().status(Status.BORROWED)},
+                {"BANNED by Author 7", new BookFilter().status(Status.BANNED).author("Author 7")},
+                {"EXIT 1990-1999", new BookFilter().status(Status.EXIT).years(1990, 1999)},
+                {"BANNED 1900-2000", new BookFilter().status(Status.BANNED).years(1900, 2000)},
+                {"BORROWED by Author 7, 1950-2024",
+                        new BookFilter().status(Status.BORROWED).author("Author 7").years(1950, 2024)}};
+        long countNanos = time(() -> library.countByStatus(Status.BORROWED));
+        System.out.printf("%-34s %12.3f %10d%n", "countByStatus(BORROWED)", countNanos / 1e3,
+                library.countByStatus(Status.BORROWED));
+        for (Object[] filter : filters) {
+            BookFilter bookFilter = (BookFilter) filter[1];
+            long countTime = time(() -> library.count(bookFilter));
+            long findTime = time(() -> library.find(bookFilter, 20));
+            System.out.printf("%-34s %12.1f %10d%n", "count " + filter[0], countTime / 1e3, library.count(bookFilter));
+            System.out.printf("%-34s %12.1f %10d%n", "find 20 " + filter[0], findTime / 1e3,
+                    library.find(bookFilter, 20).size());
+        }
+    }
+
+    // Skewed author and title-prefix lookups with the result cache on and off, alone and
+    // with 1% of the operations being status updates that invalidate cached keys
+    private static void benchmarkQueryCache() {
+        System.out.println("=== Query cache (1000000 books, skewed lookups) ===");
+        System.out.printf("%-22s %14s %14s %10s%n", "workload", "uncached us", "cached us", "hit rate");
+        List<Book> books = catalog(1_000_000);
+        String[] prefixes = {"the", "the lord", "winter", "sea fire", "king", "road 1"};
+        for (boolean writes : new boolean[]{false, true}) {
+            long[] nanos = new long[2];
+            double hitRate = 0;
+            for (int cached = 0; cached < 2; cached++) {
+                Library library = cached == 1 ? new Library() : new Library(0);
+                library.addAll(books);
+                Random random = new Random(7);
+                nanos[cached] = time(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        if (writes && random.nextInt(100) == 0) {
+                            Book book = books.get(random.nextInt(books.size()));
+                            library.updateStatus(book.getTitle(), Status.values()[random.nextInt(3)]);
+                        } else if (random.nextBoolean()) {
+                            // Squared like the generator, so the prolific authors are asked for most
+                            double u = random.nextDouble();
+                            library.getBooksByAuthor("Author " + (int) (u * u * 500));
+                        } else {
+                            library.searchTitlesByPrefix(prefixes[random.nextInt(prefixes.length)], 20);
+                        }
+                    }
+                }) / 10_000;
+                QueryCache authors = library.authorCache();
+                QueryCache titles = library.prefixCache();
+                long hits = authors.hits() + titles.hits();
+                hitRate = (double) hits / (hits + authors.misses() + titles.misses());
+            }
+            System.out.printf("%-22s %14.2f %14.2f %9.1f%%%n", writes ? "lookups + 1% writes" : "lookups only",
+                    nanos[0] / 1e3, nanos[1] / 1e3, hitRate * 100);
+        }
+    }
+
+    // Cost of InstrumentedLibrary's timing on the cheapest operations, where it shows most
+    private static void benchmarkMetricsOverhead() {
+        System.out.println("=== Metrics overhead (100000 books, 10000 calls) ===");
+        System.out.printf("%-22s %14s %16s %12s%n", "operation", "Library ns", "Instrumented ns", "overhead");
+        CatalogGenerator catalog = new CatalogGenerator(100_000, 42);
+        List<String> titles = catalog.existingTitles(10_000);
+        List<String> authors = catalog.existingAuthors(10_000);
+        Library plain = new Library();
+        plain.addAll(catalog.books());
+        InstrumentedLibrary instrumented = new InstrumentedLibrary();
+        instrumented.addAll(catalog.books());
+        String[] operations = {"searchBookByTitle", "getBooksByAuthor", "updateStatus"};
+        for (String operation : operations) {
+            long[] nanos = {Long.MAX_VALUE, Long.MAX_VALUE};
+            Library[] libraries = {plain, instrumented};
+            // Alternating runs, so that neither side gets all the quiet moments
+            for (int run = 0; run < 10; run++) {
+                int i = run % 2;
+                Library library = libraries[i];
+                nanos[i] = Math.min(nanos[i], time(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        switch (operation) {
+                            case "searchBookByTitle":
+                                library.searchBookByTitle(titles.get(j));
+                                break;
+                            case "getBooksByAuthor":
+                                library.getBooksByAuthor(authors.get(j));
+                                break;
+                            default:
+                                library.updateStatus(titles.get(j), Status.values()[j % 3]);
+                        }
+                    }
+                }) / 10_000);
+            }
+            System.out.printf("%-22s %14d %16d %+11.1f%%%n", operation, nanos[0], nanos[1],
+                    (nanos[1] - nanos[0]) * 100.0 / nanos[0]);
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        long record = time(() -> {
+            for (int j = 0; j < 10_000; j++) {
+                long start = System.nanoTime();
+                histogram.record(System.nanoTime() - start);
+            }
+        }) / 10_000;
+        System.out.printf("%-22s %14s %16d%n", "nanoTime x2 + record", "", record);
+    }
+
+    // ShardedLibrary from one shard up to at least one per core. Loading and sorting are
+    // single runs; the queries are best-of-N over 1000 authors, 100 filters and one full
+    // year-ordered listing.
+    private static void benchmarkSharding() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("=== Sharding (1000000 books, " + cores + " cores) ===");
+        System.out.printf("%8s %12s %12s %14s %12s %16s%n",
+                "shards", "addAll ms", "sort ms", "author us", "filter us", "booksByYear ms");
+        CatalogGenerator catalog = new CatalogGenerator(1_000_000, 42);
+        List<String> authors = catalog.existingAuthors(1_000);
+        BookFilter filter = new BookFilter().status(Status.BORROWED).years(1900, 1999);
+        for (int shards = 1; shards <= Math.max(8, cores); shards *= 2) {
+            ShardedLibrary library = new ShardedLibrary(shards);
+            long start = System.nanoTime();
+            library.addAll(catalog.books());
+            long load = System.nanoTime() - start;
+            start = System.nanoTime();
+            library.sortBooksByYear();
+            long sort = System.nanoTime() - start;
+            long author = time(() -> {
+                for (String name : authors) {
+                    library.getBooksByAuthor(name);
+                }
+            }) / authors.size();
+            long count = time(() -> {
+                for (int i = 0; i < 100; i++) {
+                    library.count(filter);
+                }
+            }) / 100;
+            long listing = time(library::booksByYear);
+            System.out.printf("%8d %12.1f %12.1f %14.1f %12.1f %16.1f%n", shards, load / 1e6, sort / 1e6,
+                    author / 1e3, count / 1e3, listing / 1e6);
+        }
+    }
+
+    // OffHeapLibrary over 1M books: building it, reopening it, the heap it keeps after a
+    // reopen, and lookups next to an on-heap Library
+    private static void benchmarkOffHeap() throws IOException {
+        System.out.println("=== Off-heap store (1000000 books) ===");
+        CatalogGenerator catalog = new CatalogGenerator(1_000_000, 42);
+        List<String> titles = catalog.existingTitles(10_000);
+        List<String> authors = catalog.existingAuthors(1_000);
+        Path directory = Files.createTempDirectory("offheap");
+        try {
+            long start = System.nanoTime();
+            try (OffHeapLibrary library = OffHeapLibrary.open(directory.toString())) {
+                library.addAll(catalog.books());
+            }
+            long build = System.nanoTime() - start;
+            long fileBytes = 0;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    fileBytes += Files.size(file);
+                }
+            }
+
+            long before = usedHeap();
+            start = System.nanoTime();
+            try (OffHeapLibrary library = OffHeapLibrary.open(directory.toString())) {
+                long reopen = System.nanoTime() - start;
+                long heap = usedHeap() - before;
+                System.out.printf("%-26s %12.1f%n", "build + close ms", build / 1e6);
+                System.out.printf("%-26s %12.3f%n", "reopen ms", reopen / 1e6);
+                System.out.printf("%-26s %12.1f%n", "files MB", fileBytes / 1e6);
+                System.out.printf("%-26s %12.1f%n", "heap after reopen MB", heap / 1e6);
+
+                Library onHeap = new Library(0);
+                onHeap.addAll(catalog.books());
+                System.out.printf("%-26s %12s %12s%n", "lookup", "Library us", "off-heap us");
+                long heapTitle = time(() -> titles.forEach(onHeap::searchBookByTitle)) / titles.size();
+                long offTitle = time(() -> titles.forEach(library::searchBookByTitle)) / titles.size();
+                System.out.printf("%-26s %12.2f %12.2f%n", "searchBookByTitle", heapTitle / 1e3, offTitle / 1e3);
+                long heapAuthor = time(() -> authors.forEach(onHeap::getBooksByAuthor)) / authors.size();
+                long offAuthor = time(() -> authors.forEach(library::getBooksByAuthor)) / authors.size();
+                System.out.printf("%-26s %12.2f %12.2f%n", "getBooksByAuthor", heapAuthor / 1e3, offAuthor / 1e3);
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // CatalogSync of a 1M-line file after changing 0 to 100000 of its lines (a third each
+    // inserted, deleted and given a new status), against comparing every line and against
+    // reloading the file into an empty Library. Single runs.
+    private static void benchmarkSync() throws IOException {
+        System.out.println("=== Incremental sync (1000000 lines) ===");
+        List<String> lines = new ArrayList<>();
+        for (Book book : catalog(1_000_000)) {
+            lines.add(book.getAuthor() + "," + book.getTitle() + "," + book.getYearOfPublish() + ","
+                    + book.getStatus().name());
+        }
+        Path file = Files.createTempFile("books", ".csv");
+        try {
+            Files.write(file, lines);
+            long start = System.nanoTime();
+            CatalogLoader.load(file.toString(), new Library());
+            System.out.printf("%-30s %12.1f%n", "reload into empty Library ms", (System.nanoTime() - start) / 1e6);
+
+            Library library = new Library();
+            CatalogSync sync = new CatalogSync(library);
+            sync.sync(file.toString());
+            // Warms up the incremental path
+            sync.sync(file.toString());
+            System.out.printf("%14s %18s %22s%n", "changed lines", "incremental ms", "compare every line ms");
+            Random random = new Random(5);
+            for (int changes : new int[]{0, 1_000, 10_000, 100_000}) {
+                for (int i = 0; i < changes; i++) {
+                    int line = random.nextInt(lines.size());
+                    // Where lines go in the file does not matter to the sync, so inserts are
+                    // appended and a deleted line is overwritten by the last one
+                    if (i % 3 == 0) {
+                        lines.add("Author New,Inserted " + changes + " " + i + ",2024,EXIT");
+                    } else if (i % 3 == 1) {
+                        lines.set(line, lines.get(lines.size() - 1));
+                        lines.remove(lines.size() - 1);
+                    } else {
+                        String text = lines.get(line);
+                        String status = text.endsWith("EXIT") ? "BORROWED" : "EXIT";
+                        lines.set(line, text.substring(0, text.lastIndexOf(',') + 1) + status);
+                    }
+                }
+                Files.write(file, lines);
+                start = System.nanoTime();
+                sync.sync(file.toString());
+                long incremental = System.nanoTime() - start;
+                // A fresh CatalogSync knows no lines, so it compares them all; with nothing left to
+                // apply it leaves the version alone and the next round is incremental again
+                start = System.nanoTime();
+                new CatalogSync(library).sync(file.toString());
+                long full = System.nanoTime() - start;
+                System.out.printf("%14d %18.1f %22.1f%n", changes, incremental / 1e6, full / 1e6);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Finding a copy on the shelf among many borrowed ones: scanning the books with the title,
+    // as callers had to before, against the per-status copy stacks. The one copy on the
+    // shelf is the last one added, so a scan in list order finds it last.
+    private static void benchmarkCopies() {
+        System.out.println("=== Copies of one title (100000 other books) ===");
+        System.out.printf("%10s %12s %22s %24s%n", "copies", "scan ns", "findAvailableCopy ns", "checkout + checkin ns");
+        List<Book> books = catalog(100_000);
+        for (int copies : new int[]{1, 10, 100, 1_000, 10_000}) {
+            Library library = new Library();
+            library.addAll(books);
+            for (int i = 0; i < copies; i++) {
+                library.addBook(new Book("Author Popular", "Popular Title", 2000,
+                        i == copies - 1 ? Status.EXIT : Status.BORROWED));
+            }
+            Book[] found = new Book[1];
+            long scan = time(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    for (Book book : library.searchTitlesByPrefix("popular title", Integer.MAX_VALUE)) {
+                        if (book.getStatus() == Status.EXIT) {
+                            found[0] = book;
+                            break;
+                        }
+                    }
+                }
+            }) / 1_000;
+            long find = time(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    found[0] = library.findAvailableCopy("popular title");
+                }
+            }) / 1_000;
+            long move = time(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    found[0] = library.checkout("popular title");
+                    library.checkin("popular title");
+                }
+            }) / 1_000;
+            System.out.printf("%10d %12d %22d %24d%n", copies, scan, find, move);
+        }
+    }
+
+    // Write throughput of producer threads calling the Library directly against queueing the
+    // same calls on an AsyncLibraryWriter and waiting for the last futures. Each run starts
+    // from a fresh copy of the catalog; "add + delete" deletes every book right after adding
+    // it, so the synchronous deleteBook walks the whole list to reach it.
+    private static void benchmarkAsyncWrites() throws InterruptedException {
+        System.out.println("=== Async writes (100000 books) ===");
+        System.out.printf("%-14s %10s %14s %14s %12s%n", "workload", "producers", "sync ops/s", "async ops/s", "avg batch");
+        List<Book> books = catalog(100_000);
+        for (boolean deletes : new boolean[]{false, true}) {
+            int operations = deletes ? 8_000 : 200_000;
+            for (int producers : new int[]{1, 4}) {
+                double[] rates = new double[2];
+                double averageBatch = 0;
+                for (int async = 0; async < 2; async++) {
+                    Library library = new Library();
+                    library.addAll(books);
+                    AsyncLibraryWriter writer = async == 1 ? new AsyncLibraryWriter(library, null) : null;
+                    int perProducer = operations / producers / (deletes ? 2 : 1);
+                    List<Thread> threads = new ArrayList<>();
+                    for (int p = 0; p < producers; p++) {
+                        int id = p;
+                        threads.add(new Thread(() -> {
+                            CompletableFuture<Boolean> last = null;
+                            try {
+                                for (int i = 0; i < perProducer; i++) {
+                                    Book book = new Book("Writer " + id, "Written " + id + " " + i, 2000, Status.EXIT);
+                                    if (writer == null) {
+                                        library.addBook(book);
+                                        if (deletes) library.deleteBook(book.getTitle());
+                                    } else {
+                                        last = writer.addBook(book);
+                                        if (deletes) last = writer.deleteBook(book.getTitle());
+                                    }
+                                }
+                                // One queue and one writer, so the last future finishes after all the others
+                                if (last != null) last.join();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }));
+                    }
+                    long start = System.nanoTime();
+                    threads.forEach(Thread::start);
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                    rates[async] = operations / ((System.nanoTime() - start) / 1e9);
+                    if (writer != null) {
+                        averageBatch = (double) writer.mutations() / writer.batches();
+                        writer.close();
+                    }
+                }
+                System.out.printf("%-14s %10d %14.0f %14.0f %12.1f%n", deletes ? "add + delete" : "add",
+                        producers, rates[0], rates[1], averageBatch);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long runReaders(Library library, List<Book> books, int readers, boolean withWriter)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder lookups = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            int seed = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                    Book book = books.get(random.nextInt(books.size()));
+                    library.searchBookByTitle(book.getTitle());
+                    library.getBooksByAuthor(book.getAuthor());
+                    lookups.add(2);
+                }
+            }));
+        }
+        if (withWriter) {
+            threads.add(new Thread(() -> {
+                int i = 0;
+                while (running.get()) {
+                    Book book = new Book("Writer", "Extra " + i++, 2000, Status.EXIT);
+                    library.addBook(book);
+                    library.deleteBook(book.getTitle());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(2000);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return lookups.sum() / 2;
+    }
+
+    private static void writeCsv(Library library, Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            library.forEachBook(book -> {
+                try {
+                    out.write(book.getAuthor() + "," + book.getTitle() + "," + book.getYearOfPublish()
+                            + "," + book.getStatus().name());
+                    out.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private static List<Book> catalog(int count) {
+        return new CatalogGenerator(count, 42).books();
+    }
+
+    // Best-of-N wall time in nanoseconds after a few warmup runs
+    private static long time(Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
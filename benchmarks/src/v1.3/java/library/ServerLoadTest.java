@@ -0,0 +1,157 @@
+package library;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Load test for LibraryServer over localhost: client threads send a mix of lookups and
+// updates for a fixed time and the latencies of all requests are pooled. After building the
+// benchmarks module, run
+//   java -Xmx2g -cp benchmarks/target/benchmarks.jar library.ServerLoadTest
+class ServerLoadTest {
+    private static final int BOOKS = 100_000;
+    private static final int[] CLIENTS = {1, 8, 32};
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long RUN_MILLIS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        // As LibraryApp --serve does; see LibraryServer
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+        CatalogGenerator catalog = new CatalogGenerator(BOOKS, 42);
+        Library library = new Library();
+        library.addAll(catalog.books());
+        List<String> titles = catalog.existingTitles(10_000);
+        List<String> authors = catalog.existingAuthors(1_000);
+
+        LibraryServer server = new LibraryServer(library, null, 0);
+        server.start();
+        String base = "http://localhost:" + server.port();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(LibraryServer.newRequestExecutor()).build();
+        try {
+            System.out.println("=== LibraryServer, " + BOOKS + " books ===");
+            System.out.println("Mix: 5% adds, each followed by a delete; the rest 60:15:10:10 title, author, one-year range, status update");
+            System.out.printf("%8s %12s %10s %10s %10s %8s%n", "clients", "requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+            run(client, base, titles, authors, 4, WARMUP_MILLIS);
+            for (int clients : CLIENTS) {
+                Result result = run(client, base, titles, authors, clients, RUN_MILLIS);
+                long[] latencies = result.latencies;
+                Arrays.sort(latencies);
+                System.out.printf("%8d %12.0f %10.2f %10.2f %10.2f %8d%n", clients,
+                        latencies.length / (RUN_MILLIS / 1e3), percentile(latencies, 50) / 1e6,
+                        percentile(latencies, 99) / 1e6, percentile(latencies, 100) / 1e6, result.errors);
+            }
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static class Result {
+        long[] latencies;
+        int errors;
+    }
+
+    private static Result run(HttpClient client, String base, List<String> titles, List<String> authors,
+                              int clients, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[][] perThread = new long[clients][];
+        int[] perThreadCount = new int[clients];
+        int[] errors = new int[clients];
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int id = c;
+            threads.add(new Thread(() -> {
+                Random random = new Random(id);
+                long[] latencies = new long[1 << 16];
+                int count = 0;
+                int added = 0;
+                String pendingDelete = null;
+                while (running.get()) {
+                    HttpRequest request;
+                    if (pendingDelete != null) {
+                        // Every add is followed by a delete of the same book, so the catalog keeps its size
+                        request = request(base + "/books?title=" + encode(pendingDelete), "DELETE");
+                        pendingDelete = null;
+                    } else if (random.nextInt(100) < 5) {
+                        pendingDelete = "Load " + id + " " + added++;
+                        request = request(base + "/books?author=Load&title=" + encode(pendingDelete)
+                                + "&year=2024&status=EXIT", "POST");
+                    } else {
+                        request = nextLookup(random, base, titles, authors);
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() >= 400) errors[id]++;
+                    } catch (IOException e) {
+                        errors[id]++;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                perThread[id] = latencies;
+                perThreadCount[id] = count;
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Result result = new Result();
+        int total = 0;
+        for (int c = 0; c < clients; c++) {
+            total += perThreadCount[c];
+            result.errors += errors[c];
+        }
+        result.latencies = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(perThread[c], 0, result.latencies, offset, perThreadCount[c]);
+            offset += perThreadCount[c];
+        }
+        return result;
+    }
+
+    // The other 95% of the mix, in proportion
+    private static HttpRequest nextLookup(Random random, String base, List<String> titles, List<String> authors) {
+        String title = titles.get(random.nextInt(titles.size()));
+        int pick = random.nextInt(95);
+        if (pick < 60) {
+            return request(base + "/books?title=" + encode(title), "GET");
+        } else if (pick < 75) {
+            return request(base + "/books/author?name=" + encode(authors.get(random.nextInt(authors.size()))), "GET");
+        } else if (pick < 85) {
+            int year = 1800 + random.nextInt(225);
+            return request(base + "/books/years?from=" + year + "&to=" + year, "GET");
+        } else {
+            String status = Status.values()[random.nextInt(3)].name();
+            return request(base + "/books/status?title=" + encode(title) + "&status=" + status, "POST");
+        }
+    }
+
+    private static HttpRequest request(String uri, String method) {
+        return HttpRequest.newBuilder(URI.create(uri)).method(method, HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -1,3 +1,5 @@
+package library;
+
 import java.util.*;
 
 enum Status {
@@ -65,18 +67,46 @@ class LinkedListNode<T> {
 
 class Library {
     private LinkedListNode<Book> head;
+    private LinkedListNode<Book> tail;
+    private int size;
 
     public void addBook(Book book) {
         LinkedListNode<Book> newNode = new LinkedListNode<>(book);
         if (head == null) {
             head = newNode;
         } else {
-            LinkedListNode<Book> temp = head;
-            while (temp.next != null) {
-                temp = temp.next;
+            tail.next = newNode;
+        }
+        tail = newNode;
+        size++;
+    }
+
+    public void addAll(Collection<Book> books) {
+        if (books.isEmpty()) return;
+
+        LinkedListNode<Book> first = null;
+        LinkedListNode<Book> last = null;
+        for (Book book : books) {
+            LinkedListNode<Book> newNode = new LinkedListNode<>(book);
+            if (first == null) {
+                first = newNode;
+            } else {
+                last.next = newNode;
             }
-            temp.next = newNode;
+            last = newNode;
         }
+
+        if (head == null) {
+            head = first;
+        } else {
+            tail.next = first;
+        }
+        tail = last;
+        size += books.size();
+    }
+
+    public int size() {
+        return size;
     }
 
     public void displayBooks() {
@@ -119,6 +149,8 @@ class Library {
 
         if (head.data.getTitle().equalsIgnoreCase(title)) {
             head = head.next;
+            if (head == null) tail = null;
+            size--;
             return true;
         }
 
@@ -128,7 +160,9 @@ class Library {
         }
 
         if (temp.next != null) {
+            if (temp.next == tail) tail = temp;
             temp.next = temp.next.next;
+            size--;
             return true;
         }
 
@@ -170,6 +204,11 @@ class Library {
                 }
             }
         } while (swapped);
+
+        tail = head;
+        while (tail.next != null) {
+            tail = tail.next;
+        }
     }
 }
 
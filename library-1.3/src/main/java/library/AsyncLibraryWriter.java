@@ -0,0 +1,149 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.io.Closeable;
+import java.io.IOException;
+
+// Takes addBook and deleteBook calls from any number of threads and applies them on a single
+// writer thread. Each call queues its mutation and returns a future at once; the writer takes
+// whatever has queued up, at most maxBatch mutations, and applies them with one
+// Library.applyBatch, so a whole batch costs one write lock, one linking step for its adds and
+// one walk of the list for its deletes. With a store, the batch goes through
+// LibraryStore.applyBatch instead, which also logs it and waits for one fsync, and futures
+// complete only once the batch is durable. The queue is bounded: when it is full, callers block
+// until the writer has made room. Futures complete on the writer thread, so callbacks attached
+// to them without an executor should be short.
+class AsyncLibraryWriter implements Closeable {
+    static final int DEFAULT_QUEUE_CAPACITY = 16 * 1024;
+    static final int DEFAULT_MAX_BATCH = 4096;
+    // How long the idle writer waits before it looks at the closed flag again
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    private final Library library;
+    // Batches go through the store when there is one, so that they are logged
+    private final LibraryStore store;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatch;
+    private final Thread writer;
+    private volatile boolean closed;
+    // Written by the writer thread only
+    private volatile long batches;
+    private volatile long mutations;
+
+    private static class Pending extends Mutation {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        Pending(Book book, String title) {
+            super(book, title);
+        }
+    }
+
+    AsyncLibraryWriter(Library library, LibraryStore store) {
+        this(library, store, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    AsyncLibraryWriter(Library library, LibraryStore store, int queueCapacity, int maxBatch) {
+        this.library = library;
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        writer = new Thread(this::run, "library-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Completes with true once the book is in the library, and logged when there is a store
+    CompletableFuture<Boolean> addBook(Book book) throws InterruptedException {
+        return submit(new Pending(book, null));
+    }
+
+    // Completes with whether a book with the title was found and deleted, exactly as the
+    // synchronous deleteBook would have answered at this point in the order of mutations
+    CompletableFuture<Boolean> deleteBook(String title) throws InterruptedException {
+        return submit(new Pending(null, title));
+    }
+
+    long batches() {
+        return batches;
+    }
+
+    long mutations() {
+        return mutations;
+    }
+
+    // Applies everything queued before this call, then stops the writer. Calls made while
+    // closing either make it into the last batches or fail with IllegalStateException.
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        List<Pending> late = new ArrayList<>();
+        queue.drainTo(late);
+        for (Pending pending : late) {
+            pending.future.completeExceptionally(new IllegalStateException("Writer is closed"));
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private CompletableFuture<Boolean> submit(Pending pending) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        queue.put(pending);
+        // Lost a race with close: if nothing took the mutation after the writer stopped, it
+        // is withdrawn here; otherwise whoever took it completes the future
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        return pending.future;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            Pending first;
+            try {
+                first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                if (closed) return;
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<Pending> batch) {
+        try {
+            if (store != null) {
+                store.applyBatch(batch);
+            } else {
+                library.applyBatch(batch);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+        batches++;
+        mutations += batch.size();
+        for (Pending pending : batch) {
+            pending.future.complete(pending.applied);
+        }
+    }
+}
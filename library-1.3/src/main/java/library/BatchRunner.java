@@ -0,0 +1,284 @@
+package library;
+
+import java.util.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+// Runs a script of commands against a Library without the menu, one command per line:
+//   add <author>,<title>,<year>,<status>
+//   delete <title>
+//   search <title>
+//   author <name>
+//   range <first year>,<last year>
+//   status <title>,<status>
+// Blank lines and lines starting with # are skipped. Lines are read in batches, and within
+// a batch consecutive adds, consecutive deletes and consecutive status changes are applied
+// by one addAll, applyBatch or updateStatuses call; the commands of such a run share its
+// time equally in the latency report. Results and the report go out through one buffered
+// writer.
+class BatchRunner {
+    static final int BATCH_SIZE = 1024;
+    static final String[] COMMANDS = {"add", "delete", "search", "author", "range", "status"};
+
+    private final Library library;
+    // Mutations go through the store when there is one, so that they are logged
+    private final LibraryStore store;
+    private final Writer out;
+    private final Map<String, Latencies> latencies = new LinkedHashMap<>();
+    private int invalidLines;
+
+    BatchRunner(Library library, LibraryStore store, Writer out) {
+        this.library = library;
+        this.store = store;
+        this.out = out;
+        for (String command : COMMANDS) {
+            latencies.put(command, new Latencies());
+        }
+    }
+
+    // Runs every command from the reader, then writes the latency report
+    void run(BufferedReader in) throws IOException {
+        long start = System.nanoTime();
+        List<Command> batch = new ArrayList<>(BATCH_SIZE);
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            Command command = parse(line.trim(), lineNumber);
+            if (command == null) continue;
+            batch.add(command);
+            if (batch.size() == BATCH_SIZE) {
+                execute(batch);
+                batch.clear();
+            }
+        }
+        execute(batch);
+        report(System.nanoTime() - start);
+        out.flush();
+    }
+
+    // A command, or null for a line to skip. An invalid line becomes an "invalid" command
+    // that reports it, so the report shows up in script order among the results.
+    private Command parse(String line, int lineNumber) {
+        if (line.isEmpty() || line.startsWith("#")) return null;
+        int space = line.indexOf(' ');
+        String name = (space < 0 ? line : line.substring(0, space)).toLowerCase();
+        String argument = space < 0 ? "" : line.substring(space + 1).trim();
+        Command command = new Command(name, argument);
+        try {
+            switch (name) {
+                case "add": {
+                    String[] fields = argument.split(",");
+                    if (fields.length != 4) return invalid(lineNumber, "expected add <author>,<title>,<year>,<status>");
+                    int year = Integer.parseInt(fields[2].trim());
+                    Status status = Status.parse(fields[3]);
+                    if (status == null) return invalid(lineNumber, "invalid year or status");
+                    command.book = new Book(fields[0].trim(), fields[1].trim(), year, status);
+                    return command;
+                }
+                case "range": {
+                    String[] fields = argument.split(",");
+                    if (fields.length != 2) return invalid(lineNumber, "expected range <first year>,<last year>");
+                    command.from = Integer.parseInt(fields[0].trim());
+                    command.to = Integer.parseInt(fields[1].trim());
+                    return command;
+                }
+                case "status": {
+                    int comma = argument.lastIndexOf(',');
+                    if (comma < 0) return invalid(lineNumber, "expected status <title>,<status>");
+                    command.argument = argument.substring(0, comma).trim();
+                    command.status = Status.parse(argument.substring(comma + 1));
+                    return command.status != null ? command : invalid(lineNumber, "invalid year or status");
+                }
+                case "delete":
+                case "search":
+                case "author":
+                    return argument.isEmpty() ? invalid(lineNumber, "missing argument") : command;
+                default:
+                    return invalid(lineNumber, "unknown command '" + name + "'");
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            return invalid(lineNumber, "invalid year or status");
+        }
+    }
+
+    private Command invalid(int lineNumber, String reason) {
+        invalidLines++;
+        return new Command("invalid", "Line " + lineNumber + ": " + reason);
+    }
+
+    private void execute(List<Command> batch) throws IOException {
+        int i = 0;
+        while (i < batch.size()) {
+            String name = batch.get(i).name;
+            int end = i + 1;
+            if (name.equals("add") || name.equals("delete") || name.equals("status")) {
+                while (end < batch.size() && batch.get(end).name.equals(name)) end++;
+            }
+            List<Command> run = batch.subList(i, end);
+            long start = System.nanoTime();
+            switch (name) {
+                case "add":
+                    addAll(run);
+                    break;
+                case "delete":
+                    deleteAll(run);
+                    break;
+                case "status":
+                    updateStatuses(run);
+                    break;
+                default:
+                    executeOne(run.get(0));
+            }
+            long perCommand = (System.nanoTime() - start) / run.size();
+            Latencies command = latencies.get(name);
+            for (int k = 0; command != null && k < run.size(); k++) {
+                command.add(perCommand);
+            }
+            i = end;
+        }
+    }
+
+    private void addAll(List<Command> run) throws IOException {
+        List<Book> books = new ArrayList<>(run.size());
+        for (Command command : run) {
+            books.add(command.book);
+        }
+        if (store != null) {
+            store.addAll(books);
+        } else {
+            library.addAll(books);
+        }
+        for (Book book : books) {
+            out.write("Book added: ");
+            out.write(book.toString());
+            out.write(System.lineSeparator());
+        }
+    }
+
+    // A weeding list unlinks all of its books in one walk of the list rather than one each
+    private void deleteAll(List<Command> run) throws IOException {
+        List<Mutation> deletes = new ArrayList<>(run.size());
+        for (Command command : run) {
+            deletes.add(new Mutation(null, command.argument));
+        }
+        if (store != null) {
+            store.applyBatch(deletes);
+        } else {
+            library.applyBatch(deletes);
+        }
+        for (Mutation delete : deletes) {
+            out.write((delete.applied ? "Book deleted: " : "Book not found: ") + delete.title);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private void updateStatuses(List<Command> run) throws IOException {
+        // A title changed twice in one run ends with its last status, as it would one by one
+        Map<String, Status> updates = new LinkedHashMap<>();
+        for (Command command : run) {
+            updates.remove(command.argument);
+            updates.put(command.argument, command.status);
+        }
+        if (store != null) {
+            store.updateStatuses(updates);
+        } else {
+            library.updateStatuses(updates);
+        }
+        for (Command command : run) {
+            Book book = library.searchBookByTitle(command.argument);
+            out.write(book != null ? "Status of '" + book.getTitle() + "' is " + book.getStatus().name()
+                    : "Book not found: " + command.argument);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private void executeOne(Command command) throws IOException {
+        switch (command.name) {
+            case "search": {
+                Book book = library.searchBookByTitle(command.argument);
+                out.write(book != null ? book.toString() : "Book not found: " + command.argument);
+                out.write(System.lineSeparator());
+                break;
+            }
+            case "invalid":
+                out.write(command.argument + System.lineSeparator());
+                break;
+            case "author": {
+                List<Book> books = library.getBooksByAuthor(command.argument);
+                if (books.isEmpty()) {
+                    out.write("No books found by " + command.argument + "." + System.lineSeparator());
+                }
+                Library.writeBooks(books, out);
+                break;
+            }
+            default: {
+                List<Book> books = library.getBooksByYearRange(command.from, command.to);
+                if (books.isEmpty()) {
+                    out.write("No books published between " + command.from + " and " + command.to + "."
+                            + System.lineSeparator());
+                }
+                Library.writeBooks(books, out);
+            }
+        }
+    }
+
+    private void report(long elapsedNanos) throws IOException {
+        out.write(String.format("%n=== Batch report ===%n%-8s %10s %12s %10s %10s %10s %10s%n",
+                "command", "count", "total ms", "mean us", "p50 us", "p99 us", "max us"));
+        long commands = 0;
+        for (Map.Entry<String, Latencies> entry : latencies.entrySet()) {
+            Latencies command = entry.getValue();
+            if (command.size == 0) continue;
+            commands += command.size;
+            command.sort();
+            out.write(String.format("%-8s %10d %12.1f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), command.size,
+                    command.total / 1e6, command.total / 1e3 / command.size, command.percentile(50) / 1e3,
+                    command.percentile(99) / 1e3, command.percentile(100) / 1e3));
+        }
+        out.write(String.format("%d commands in %.1f ms (%.0f commands/s), %d invalid lines skipped%n",
+                commands, elapsedNanos / 1e6, commands / (elapsedNanos / 1e9), invalidLines));
+    }
+
+    // One parsed line; only the fields its command uses are set
+    private static class Command {
+        final String name;
+        String argument;
+        Book book;
+        Status status;
+        int from;
+        int to;
+
+        Command(String name, String argument) {
+            this.name = name;
+            this.argument = argument;
+        }
+    }
+
+    // Every latency of one command, in nanoseconds
+    private static class Latencies {
+        long[] values = new long[64];
+        int size;
+        long total;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+            total += nanos;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        // Nearest-rank percentile of the sorted values
+        long percentile(int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * size);
+            return values[Math.max(0, rank - 1)];
+        }
+    }
+}
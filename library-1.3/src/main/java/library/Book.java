@@ -0,0 +1,75 @@
+package library;
+
+// Class representing a Book
+class Book {
+    private String author, title;
+    private int yearOfPublish;
+    private Status status;
+    // Lookup keys for title and author, hashed once here rather than on every index access
+    private final FoldedKey titleKey, authorKey;
+
+    public Book(String author, String title, int yearOfPublish, Status status) {
+        this(author, title, yearOfPublish, status, new FoldedKey(author));
+    }
+
+    // For loaders that share one key among all books of an author
+    Book(String author, String title, int yearOfPublish, Status status, FoldedKey authorKey) {
+        this.author = author;
+        this.title = title;
+        this.yearOfPublish = yearOfPublish;
+        this.status = status;
+        this.titleKey = new FoldedKey(title);
+        this.authorKey = authorKey;
+    }
+
+    private Book(Book book, Status status) {
+        this.author = book.author;
+        this.title = book.title;
+        this.yearOfPublish = book.yearOfPublish;
+        this.status = status;
+        this.titleKey = book.titleKey;
+        this.authorKey = book.authorKey;
+    }
+
+    // The same book with another status, sharing the keys of this one
+    Book withStatus(Status status) {
+        return new Book(this, status);
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getYearOfPublish() {
+        return yearOfPublish;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    FoldedKey titleKey() {
+        return titleKey;
+    }
+
+    FoldedKey authorKey() {
+        return authorKey;
+    }
+
+    // Appends the toString text without building it as a separate string first
+    void appendTo(StringBuilder sb) {
+        sb.append("Book{author='").append(author).append("', title='").append(title)
+                .append("', year=").append(yearOfPublish).append(", status=").append(status).append('}');
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(96);
+        appendTo(sb);
+        return sb.toString();
+    }
+}
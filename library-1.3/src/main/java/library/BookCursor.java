@@ -0,0 +1,46 @@
+package library;
+
+import java.util.*;
+
+// Pages through a Library, in list order or in year order. Pages are found by position,
+// so a cursor stays usable while other threads add or delete books; a page then simply
+// shows whatever is at its position now.
+class BookCursor {
+    private final Library library;
+    private final int pageSize;
+    private final boolean byYear;
+    private int page;
+
+    BookCursor(Library library, int pageSize, boolean byYear) {
+        if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        this.library = library;
+        this.pageSize = pageSize;
+        this.byYear = byYear;
+    }
+
+    List<Book> current() {
+        return library.getPage(page * pageSize, pageSize, byYear);
+    }
+
+    // Moves to the next page if there is one
+    boolean next() {
+        if ((page + 1) * pageSize >= library.size()) return false;
+        page++;
+        return true;
+    }
+
+    boolean previous() {
+        if (page == 0) return false;
+        page--;
+        return true;
+    }
+
+    // One-based, for display
+    int pageNumber() {
+        return page + 1;
+    }
+
+    int pageCount() {
+        return Math.max(1, (library.size() + pageSize - 1) / pageSize);
+    }
+}
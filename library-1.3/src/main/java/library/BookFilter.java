@@ -0,0 +1,36 @@
+package library;
+
+// Conditions for Library.find and Library.count. Conditions left unset match every book;
+// the setters return the filter so that they can be chained.
+class BookFilter {
+    Status status;
+    String author;
+    int fromYear = Integer.MIN_VALUE;
+    int toYear = Integer.MAX_VALUE;
+
+    BookFilter status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    // Exact author name, ignoring case
+    BookFilter author(String author) {
+        this.author = author;
+        return this;
+    }
+
+    // Publication years from and to, both inclusive
+    BookFilter years(int from, int to) {
+        this.fromYear = from;
+        this.toYear = to;
+        return this;
+    }
+
+    boolean hasYearRange() {
+        return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+    }
+
+    boolean matchesYear(Book book) {
+        return book.getYearOfPublish() >= fromYear && book.getYearOfPublish() <= toYear;
+    }
+}
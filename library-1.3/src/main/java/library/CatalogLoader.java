@@ -0,0 +1,259 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Loads a books file by splitting it into chunks at line boundaries and parsing
+// the memory-mapped chunks in parallel; books reach the Library in file order
+class CatalogLoader {
+    static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    static final int MAX_REPORTED_ERRORS = 20;
+
+    // Outcome of one load: counts plus the first few invalid lines
+    static class Result {
+        int booksLoaded;
+        int invalidLines;
+        final List<String> errors = new ArrayList<>();
+    }
+
+    static Result load(String filePath, Library library) throws IOException {
+        Result result = new Result();
+        for (ChunkTask task : parse(filePath, null, result)) {
+            library.addAll(task.books);
+            result.booksLoaded += task.books.size();
+        }
+        return result;
+    }
+
+    // Parses the file in parallel chunks, in file order, adding invalid lines to the result.
+    // With known lines, every line is hashed and those already known are skipped unparsed.
+    static List<ChunkTask> parse(String filePath, LineFingerprints known, Result result) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            List<ChunkTask> tasks = new ArrayList<>();
+            long start = 0;
+            long fileSize = channel.size();
+            while (start < fileSize) {
+                long end = nextLineStart(channel, Math.min(start + CHUNK_SIZE, fileSize), fileSize);
+                tasks.add(new ChunkTask(channel, start, (int) (end - start), known));
+                start = end;
+            }
+
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+
+            int linesBefore = 0;
+            for (ChunkTask task : tasks) {
+                if (task.failure != null) throw task.failure;
+                result.invalidLines += task.errorCount;
+                for (LineError error : task.errors) {
+                    if (result.errors.size() == MAX_REPORTED_ERRORS) break;
+                    result.errors.add(error.kind + " in line " + (linesBefore + error.line) + ": " + error.text);
+                }
+                linesBefore += task.lineCount;
+            }
+            return tasks;
+        }
+    }
+
+    private static class LineError {
+        final String kind;
+        final int line;
+        final String text;
+
+        LineError(String kind, int line, String text) {
+            this.kind = kind;
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    // Moves a chunk boundary forward to just past the next newline
+    private static long nextLineStart(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        while (position < fileSize) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    // Maps and parses one chunk straight from the file bytes; line numbers in errors
+    // are relative to the chunk
+    static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long offset;
+        private final int length;
+        // Lines to skip by hash, or null to parse every line without hashing
+        private final LineFingerprints known;
+
+        private final int[] commaAt = new int[3];
+        private byte[] scratch = new byte[256];
+        private ByteBuffer bytes;
+
+        final List<Book> books = new ArrayList<>();
+        // When hashing: the hash of each book's line, and of each known line skipped
+        final LongList bookHashes = new LongList();
+        final LongList knownHashes = new LongList();
+        final List<LineError> errors = new ArrayList<>();
+        int errorCount;
+        int lineCount;
+        IOException failure;
+
+        ChunkTask(FileChannel channel, long offset, int length, LineFingerprints known) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.known = known;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+
+            int lineStart = 0;
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && bytes.get(lineEnd) != '\n') lineEnd++;
+                lineCount++;
+                if (known == null) {
+                    parseLine(lineStart, lineEnd);
+                } else {
+                    long hash = hashLine(lineStart, lineEnd);
+                    if (known.find(hash) >= 0) {
+                        knownHashes.add(hash);
+                    } else {
+                        int parsed = books.size();
+                        parseLine(lineStart, lineEnd);
+                        if (books.size() > parsed) bookHashes.add(hash);
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        // 64-bit FNV-1a of the line's bytes without a trailing carriage return, never 0
+        private long hashLine(int start, int end) {
+            end = trimNewline(start, end);
+            long hash = 0xCBF29CE484222325L;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ (bytes.get(i) & 0xff)) * 0x100000001B3L;
+            }
+            return hash != 0 ? hash : 1;
+        }
+
+        // Scans the four comma-separated fields in place; only author and title become strings
+        private void parseLine(int start, int end) {
+            int from = skipSpace(start, end);
+            if (from == end) return; // Skip empty lines
+
+            int commas = 0;
+            for (int i = start; i < end && commas <= 3; i++) {
+                if (bytes.get(i) == ',') {
+                    if (commas < 3) commaAt[commas] = i;
+                    commas++;
+                }
+            }
+            if (commas != 3) {
+                error("Invalid format", start, trimNewline(start, end));
+                return;
+            }
+
+            int yearFrom = skipSpace(commaAt[1] + 1, commaAt[2]);
+            long year = parseInt(yearFrom, trimEnd(yearFrom, commaAt[2]));
+            if (year == Long.MIN_VALUE) {
+                error("Invalid year", commaAt[1] + 1, commaAt[2]);
+                return;
+            }
+
+            int statusFrom = skipSpace(commaAt[2] + 1, end);
+            Status status = Status.match(bytes, statusFrom, trimEnd(statusFrom, end));
+            if (status == null) {
+                error("Invalid status", commaAt[2] + 1, trimNewline(commaAt[2] + 1, end));
+                return;
+            }
+
+            String author = field(start, commaAt[0]);
+            String title = field(commaAt[0] + 1, commaAt[1]);
+            books.add(new Book(author, title, (int) year, status));
+        }
+
+        // Only the first few errors keep their text; the rest are just counted
+        private void error(String kind, int start, int end) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new LineError(kind, lineCount, decode(start, end)));
+            }
+        }
+
+        private String field(int start, int end) {
+            int from = skipSpace(start, end);
+            return decode(from, trimEnd(from, end));
+        }
+
+        private String decode(int start, int end) {
+            int length = end - start;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            bytes.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        // Same notion of whitespace as String.trim; UTF-8 continuation bytes are never <= ' '
+        private int skipSpace(int start, int end) {
+            while (start < end && (bytes.get(start) & 0xff) <= ' ') start++;
+            return start;
+        }
+
+        private int trimEnd(int start, int end) {
+            while (end > start && (bytes.get(end - 1) & 0xff) <= ' ') end--;
+            return end;
+        }
+
+        private int trimNewline(int start, int end) {
+            return end > start && bytes.get(end - 1) == '\r' ? end - 1 : end;
+        }
+
+        // Accepts what Integer.parseInt accepts for ASCII digits; returns Long.MIN_VALUE when invalid
+        private long parseInt(int start, int end) {
+            if (start == end) return Long.MIN_VALUE;
+            boolean negative = bytes.get(start) == '-';
+            if (negative || bytes.get(start) == '+') start++;
+            if (start == end) return Long.MIN_VALUE;
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b < '0' || b > '9') return Long.MIN_VALUE;
+                value = value * 10 + (b - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) return Long.MIN_VALUE;
+            }
+            if (negative) value = -value;
+            return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package library;
+
+import java.util.*;
+import java.io.IOException;
+
+// Brings a Library in line with a books file by applying only the differences, with the
+// title, ignoring case, as the key: books missing from the library are inserted, books
+// missing from the file are deleted, a changed status is updated in place and any other
+// change replaces the book. A title on several lines is taken from the first of them, or
+// from the line that was already in sync, and the others are reported as duplicates.
+//
+// The first sync compares every line with the library. It remembers a hash of each line,
+// and later syncs skip the lines whose hash is known without decoding them, so only new
+// and changed lines are parsed and compared, and lines whose hash no longer shows up are
+// the deletions. Hashing the file stays linear, but it costs far less than parsing it. A
+// sync after the library was changed by anything else compares every line again.
+//
+// Through a LibraryStore, the changes go into its mutation log like any others, and the
+// remembered lines are saved next to its generation, marked with the log's length. A later
+// process opening the store finds the same length only if nothing changed the library since,
+// and then picks up the lines instead of comparing every one.
+class CatalogSync {
+    // What one sync found and applied
+    static class Result {
+        int inserted;
+        int deleted;
+        int statusChanged;
+        int replaced;
+        int unchanged;
+        int duplicateTitles;
+        int invalidLines;
+        boolean fullComparison;
+        List<String> errors = new ArrayList<>();
+    }
+
+    private final Library library;
+    // Null when the changes go straight to the library and nothing is saved
+    private final LibraryStore store;
+    private final LineFingerprints lines = new LineFingerprints();
+    // Hash of the line each title was taken from
+    private final Map<String, Long> lineByTitle = new HashMap<>();
+    // Library version right after the last sync; -1 before the first one
+    private long syncedVersion = -1;
+    // Whether the store holds the lines as they are now
+    private boolean saved;
+
+    CatalogSync(Library library) {
+        this(library, null);
+    }
+
+    // The store must hold the library
+    CatalogSync(Library library, LibraryStore store) {
+        this.library = library;
+        this.store = store;
+    }
+
+    Result sync(String filePath) throws IOException {
+        Result result = new Result();
+        if (syncedVersion == -1 && store != null) {
+            // Lines saved by an earlier process, if the store is as they left it
+            long version = library.version();
+            if (store.readSyncState(lines)) {
+                lineByTitle.clear();
+                for (int id = 0; id < lines.size(); id++) {
+                    lineByTitle.put(lines.title(id), lines.hash(id));
+                }
+                syncedVersion = version;
+                saved = true;
+            }
+        }
+        result.fullComparison = library.version() != syncedVersion;
+        // Until this sync completes, the remembered lines cannot be trusted
+        syncedVersion = -1;
+        if (result.fullComparison) {
+            saved = false;
+            lines.clear();
+            lineByTitle.clear();
+        }
+        lines.startRound();
+        CatalogLoader.Result parsed = new CatalogLoader.Result();
+        List<CatalogLoader.ChunkTask> tasks = CatalogLoader.parse(filePath, lines, parsed);
+        result.invalidLines = parsed.invalidLines;
+        result.errors = parsed.errors;
+
+        // Lines known from the last sync: their books are in the library as they were
+        for (CatalogLoader.ChunkTask task : tasks) {
+            for (int i = 0; i < task.knownHashes.size; i++) {
+                int id = lines.find(task.knownHashes.values[i]);
+                if (lines.isSeen(id)) {
+                    result.duplicateTitles++;
+                } else {
+                    lines.markSeen(id);
+                    result.unchanged++;
+                }
+            }
+        }
+
+        // In a full comparison, titles the library holds more than once are replaced as a
+        // whole and titles missing from the file are deleted, every copy
+        Map<String, Integer> copies = new HashMap<>();
+        if (result.fullComparison) {
+            library.forEachBook(book -> copies.merge(Library.foldCase(book.getTitle()), 1, Integer::sum));
+        }
+
+        List<String> deletions = new ArrayList<>();
+        List<Book> insertions = new ArrayList<>();
+        Map<String, Status> statusChanges = new LinkedHashMap<>();
+        for (CatalogLoader.ChunkTask task : tasks) {
+            for (int i = 0; i < task.books.size(); i++) {
+                Book book = task.books.get(i);
+                long hash = task.bookHashes.values[i];
+                String title = Library.foldCase(book.getTitle());
+                Long previous = lineByTitle.get(title);
+                if (previous != null) {
+                    int id = lines.find(previous);
+                    if (id >= 0 && lines.isSeen(id)) {
+                        result.duplicateTitles++;
+                        continue;
+                    }
+                    // The title's old line is gone from the file; this one replaces it
+                    lines.remove(previous);
+                }
+                lines.put(hash, title);
+                lineByTitle.put(title, hash);
+
+                int count = copies.getOrDefault(title, 1);
+                Book current = library.searchBookByTitle(title);
+                if (current == null) {
+                    insertions.add(book);
+                    result.inserted++;
+                } else if (count > 1 || !current.getAuthor().equals(book.getAuthor())
+                        || !current.getTitle().equals(book.getTitle())
+                        || current.getYearOfPublish() != book.getYearOfPublish()) {
+                    for (int copy = 0; copy < count; copy++) {
+                        deletions.add(title);
+                    }
+                    insertions.add(book);
+                    result.replaced++;
+                } else if (current.getStatus() != book.getStatus()) {
+                    statusChanges.put(title, book.getStatus());
+                    result.statusChanged++;
+                } else {
+                    result.unchanged++;
+                }
+            }
+        }
+
+        if (result.fullComparison) {
+            for (Map.Entry<String, Integer> title : copies.entrySet()) {
+                if (lineByTitle.containsKey(title.getKey())) continue;
+                for (int copy = 0; copy < title.getValue(); copy++) {
+                    deletions.add(title.getKey());
+                }
+                result.deleted++;
+            }
+        } else {
+            LongList gone = lines.unseen();
+            for (int i = 0; i < gone.size; i++) {
+                long hash = gone.values[i];
+                String title = lines.title(lines.find(hash));
+                lines.remove(hash);
+                if (Long.valueOf(hash).equals(lineByTitle.get(title))) {
+                    lineByTitle.remove(title);
+                    deletions.add(title);
+                    result.deleted++;
+                }
+            }
+        }
+
+        if (store == null) {
+            library.deleteBooks(deletions);
+            library.addAll(insertions);
+            library.updateStatuses(statusChanges);
+            syncedVersion = library.version();
+            return result;
+        }
+
+        // Logged as one batch and one status update, with the same outcome as the calls above
+        List<Mutation> batch = new ArrayList<>(deletions.size() + insertions.size());
+        for (String title : deletions) {
+            batch.add(new Mutation(null, title));
+        }
+        for (Book book : insertions) {
+            batch.add(new Mutation(book, null));
+        }
+        store.applyBatch(batch);
+        store.updateStatuses(statusChanges);
+        syncedVersion = library.version();
+        if (!saved || !batch.isEmpty() || !statusChanges.isEmpty()) {
+            saved = store.saveSyncState(lines, syncedVersion);
+        }
+        return result;
+    }
+}
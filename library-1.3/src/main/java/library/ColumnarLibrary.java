@@ -0,0 +1,295 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.nio.charset.StandardCharsets;
+
+// Column-wise alternative to Library for very large catalogs: one primitive array per
+// field instead of a Book, a node and two Strings per book. Authors are dictionary
+// encoded and titles are packed as UTF-8 into one byte arena, so Book objects only exist
+// for the books a method returns. Deleted rows are tombstoned and squeezed out once they
+// make up half of the rows.
+class ColumnarLibrary {
+    // Status code marking a deleted row; real codes start at 1
+    private static final byte DELETED = 0;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Rows in use, deleted ones included
+    private int rows;
+    private int deleted;
+    private boolean sorted = true;
+
+    private int[] years = new int[16];
+    private byte[] statuses = new byte[16];
+    private int[] authorIds = new int[16];
+    // Hash of each folded title, so lookups only decode titles that are likely to match
+    private int[] titleHashes = new int[16];
+    // Row r's title is titleBytes[titleOffsets[r], titleOffsets[r + 1])
+    private int[] titleOffsets = new int[17];
+    private byte[] titleBytes = new byte[256];
+
+    // Author table deduplicated by exact name. Spellings that differ only in case share
+    // one list of rows, kept in row order, under their folded key.
+    private final List<String> authors = new ArrayList<>();
+    private final Map<String, Integer> authorIdByName = new HashMap<>();
+    private final List<IntList> authorRows = new ArrayList<>();
+    private final Map<String, IntList> rowsByAuthorKey = new HashMap<>();
+
+    // Open-addressing table of row + 1 by title hash, 0 marking a free slot. Rows go in
+    // in row order, so the first live match along a probe sequence is the earliest book.
+    private int[] titleTable = new int[32];
+
+    public void addBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            ensureRows(rows + 1);
+            appendRow(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            ensureRows(rows + books.size());
+            for (Book book : books) {
+                appendRow(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visits every book in row order; each Book is created for the visit only
+    void forEachBook(Consumer<? super Book> action) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < rows; row++) {
+                if (statuses[row] != DELETED) action.accept(book(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void displayBooks() {
+        if (size() == 0) {
+            System.out.println("The library has no books.");
+            return;
+        }
+        forEachBook(System.out::println);
+    }
+
+    public Book searchBookByTitle(String title) {
+        lock.readLock().lock();
+        try {
+            int row = findTitle(title);
+            return row >= 0 ? book(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Book> getBooksByAuthor(String author) {
+        String key = Library.foldCase(author);
+        List<Book> books = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntList authorBooks = rowsByAuthorKey.get(key);
+            if (authorBooks == null) return books;
+            for (int i = 0; i < authorBooks.size; i++) {
+                books.add(book(authorBooks.values[i]));
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean deleteBook(String title) {
+        lock.writeLock().lock();
+        try {
+            int row = findTitle(title);
+            if (row < 0) return false;
+            // The title table keeps the slot; lookups skip rows marked deleted
+            statuses[row] = DELETED;
+            authorRows.get(authorIds[row]).remove(row);
+            deleted++;
+            if (deleted > 1024 && deleted * 2 > rows) {
+                int[] order = new int[rows - deleted];
+                int count = 0;
+                for (int r = 0; r < rows; r++) {
+                    if (statuses[r] != DELETED) order[count++] = r;
+                }
+                rewrite(order);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stable sort by year: rows are ordered by (year, row) and the columns rewritten in that order
+    public void sortBooksByYear() {
+        lock.writeLock().lock();
+        try {
+            if (sorted) return;
+            long[] keys = new long[rows - deleted];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                if (statuses[row] != DELETED) keys[count++] = ((long) years[row] << 32) | row;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = (int) keys[i];
+            }
+            rewrite(order);
+            sorted = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void appendRow(Book book) {
+        int row = rows++;
+        byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        int start = titleOffsets[row];
+        if (start + title.length > titleBytes.length) {
+            titleBytes = Arrays.copyOf(titleBytes, Math.max(start + title.length, titleBytes.length * 2));
+        }
+        System.arraycopy(title, 0, titleBytes, start, title.length);
+        titleOffsets[row + 1] = start + title.length;
+
+        // While sorted, the last row (deleted or not) holds the latest year
+        sorted &= row == 0 || years[row - 1] <= book.getYearOfPublish();
+        years[row] = book.getYearOfPublish();
+        statuses[row] = (byte) book.getStatus().getCode();
+        titleHashes[row] = book.titleKey().hashCode();
+
+        Integer id = authorIdByName.get(book.getAuthor());
+        if (id == null) {
+            id = authors.size();
+            authors.add(book.getAuthor());
+            authorIdByName.put(book.getAuthor(), id);
+            authorRows.add(rowsByAuthorKey.computeIfAbsent(Library.foldCase(book.getAuthor()), k -> new IntList()));
+        }
+        authorIds[row] = id;
+        authorRows.get(id).add(row);
+
+        if (rows * 2 > titleTable.length) {
+            rebuildTitleTable(titleTable.length * 2);
+        } else {
+            placeTitle(row);
+        }
+    }
+
+    // Earliest live row with the title, ignoring case, or -1
+    private int findTitle(String title) {
+        int hash = Library.foldedHash(title);
+        int mask = titleTable.length - 1;
+        for (int slot = spread(hash) & mask; titleTable[slot] != 0; slot = (slot + 1) & mask) {
+            int row = titleTable[slot] - 1;
+            if (titleHashes[row] == hash && statuses[row] != DELETED && title(row).equalsIgnoreCase(title)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private void placeTitle(int row) {
+        int mask = titleTable.length - 1;
+        int slot = spread(titleHashes[row]) & mask;
+        while (titleTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        titleTable[slot] = row + 1;
+    }
+
+    private void rebuildTitleTable(int capacity) {
+        titleTable = new int[capacity];
+        for (int row = 0; row < rows; row++) {
+            if (statuses[row] != DELETED) placeTitle(row);
+        }
+    }
+
+    // String.hashCode differs little in the low bits for similar titles
+    private static int spread(int hash) {
+        return hash * 0x9E3779B9;
+    }
+
+    // Rebuilds every column holding only the given rows, in the given order
+    private void rewrite(int[] order) {
+        int count = order.length;
+        int capacity = Math.max(16, count);
+        int[] newYears = new int[capacity];
+        byte[] newStatuses = new byte[capacity];
+        int[] newAuthorIds = new int[capacity];
+        int[] newTitleHashes = new int[capacity];
+        int[] newTitleOffsets = new int[capacity + 1];
+        int titleLength = 0;
+        for (int row : order) {
+            titleLength += titleOffsets[row + 1] - titleOffsets[row];
+        }
+        byte[] newTitleBytes = new byte[Math.max(256, titleLength)];
+
+        for (int i = 0; i < count; i++) {
+            int row = order[i];
+            newYears[i] = years[row];
+            newStatuses[i] = statuses[row];
+            newAuthorIds[i] = authorIds[row];
+            newTitleHashes[i] = titleHashes[row];
+            int length = titleOffsets[row + 1] - titleOffsets[row];
+            System.arraycopy(titleBytes, titleOffsets[row], newTitleBytes, newTitleOffsets[i], length);
+            newTitleOffsets[i + 1] = newTitleOffsets[i] + length;
+        }
+        years = newYears;
+        statuses = newStatuses;
+        authorIds = newAuthorIds;
+        titleHashes = newTitleHashes;
+        titleOffsets = newTitleOffsets;
+        titleBytes = newTitleBytes;
+        rows = count;
+        deleted = 0;
+
+        for (IntList authorBooks : authorRows) {
+            authorBooks.size = 0;
+        }
+        for (int row = 0; row < rows; row++) {
+            authorRows.get(authorIds[row]).add(row);
+        }
+        rebuildTitleTable(Math.max(32, Integer.highestOneBit(Math.max(1, rows)) * 4));
+    }
+
+    private void ensureRows(int needed) {
+        if (needed <= years.length) return;
+        int capacity = Math.max(needed, years.length * 2);
+        years = Arrays.copyOf(years, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        authorIds = Arrays.copyOf(authorIds, capacity);
+        titleHashes = Arrays.copyOf(titleHashes, capacity);
+        titleOffsets = Arrays.copyOf(titleOffsets, capacity + 1);
+    }
+
+    private String title(int row) {
+        return new String(titleBytes, titleOffsets[row], titleOffsets[row + 1] - titleOffsets[row],
+                StandardCharsets.UTF_8);
+    }
+
+    private Book book(int row) {
+        return new Book(authors.get(authorIds[row]), title(row), years[row], Status.fromCode(statuses[row]));
+    }
+}
@@ -0,0 +1,51 @@
+package library;
+
+// A string compared ignoring case, exactly like String.equalsIgnoreCase, carrying the hash
+// of its folded form (see Library.foldCase). Case variants hash alike without being folded
+// into new strings, so a key made straight from a lookup argument finds the indexed key of
+// any book; equals compares hashes before characters.
+class FoldedKey {
+    // One key per thread that lookups point at their argument instead of allocating a key
+    private static final ThreadLocal<FoldedKey> PROBE = ThreadLocal.withInitial(() -> new FoldedKey(""));
+
+    // Only ever changed on the probe
+    private String text;
+    private int hash;
+
+    FoldedKey(String text) {
+        this.text = text;
+        this.hash = Library.foldedHash(text);
+    }
+
+    // This thread's probe set to the text, for a lookup only: it must never be stored, and
+    // the next probe call on the thread changes it
+    static FoldedKey probe(String text) {
+        FoldedKey key = PROBE.get();
+        key.text = text;
+        key.hash = Library.foldedHash(text);
+        return key;
+    }
+
+    // The string as given, in its own case
+    String text() {
+        return text;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FoldedKey)) return false;
+        FoldedKey other = (FoldedKey) o;
+        return hash == other.hash && text.equalsIgnoreCase(other.text);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,329 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.io.IOException;
+
+// Library that times its public operations, and loading a books file, into LibraryMetrics.
+// Each call costs two System.nanoTime reads and a few uncontended atomic adds, cheap enough
+// to leave on; LibraryBenchmark measures it against a plain Library.
+class InstrumentedLibrary extends Library {
+    private final LibraryMetrics metrics = new LibraryMetrics();
+    private final LatencyHistogram addBook = metrics.operation("addBook");
+    private final LatencyHistogram addAll = metrics.operation("addAll");
+    private final LatencyHistogram deleteBook = metrics.operation("deleteBook");
+    private final LatencyHistogram deleteBooks = metrics.operation("deleteBooks");
+    private final LatencyHistogram applyBatch = metrics.operation("applyBatch");
+    private final LatencyHistogram searchBookByTitle = metrics.operation("searchBookByTitle");
+    private final LatencyHistogram getBooksByAuthor = metrics.operation("getBooksByAuthor");
+    private final LatencyHistogram updateStatus = metrics.operation("updateStatus");
+    private final LatencyHistogram updateStatuses = metrics.operation("updateStatuses");
+    private final LatencyHistogram findAvailableCopy = metrics.operation("findAvailableCopy");
+    private final LatencyHistogram checkout = metrics.operation("checkout");
+    private final LatencyHistogram checkin = metrics.operation("checkin");
+    private final LatencyHistogram getBooksByYearRange = metrics.operation("getBooksByYearRange");
+    private final LatencyHistogram getNewest = metrics.operation("getNewest");
+    private final LatencyHistogram getPage = metrics.operation("getPage");
+    private final LatencyHistogram searchTitlesByPrefix = metrics.operation("searchTitlesByPrefix");
+    private final LatencyHistogram searchTitlesContaining = metrics.operation("searchTitlesContaining");
+    private final LatencyHistogram searchAuthorsByPrefix = metrics.operation("searchAuthorsByPrefix");
+    private final LatencyHistogram searchAuthorsContaining = metrics.operation("searchAuthorsContaining");
+    private final LatencyHistogram find = metrics.operation("find");
+    private final LatencyHistogram count = metrics.operation("count");
+    private final LatencyHistogram sortBooksByYear = metrics.operation("sortBooksByYear");
+    private final LatencyHistogram saveSnapshot = metrics.operation("saveSnapshot");
+    private final LatencyHistogram loadSnapshot = metrics.operation("loadSnapshot");
+    private final LatencyHistogram loadBooksFromFile = metrics.operation("loadBooksFromFile");
+    private final LongAdder booksAdded = metrics.counter("books_added");
+    private final LongAdder booksDeleted = metrics.counter("books_deleted");
+    private final LongAdder titleMisses = metrics.counter("title_lookup_misses");
+    private final LongAdder checkoutsRefused = metrics.counter("checkouts_without_copy");
+    private final LongAdder invalidLines = metrics.counter("invalid_lines");
+
+    public InstrumentedLibrary() {
+        this(QueryCache.DEFAULT_CAPACITY);
+    }
+
+    public InstrumentedLibrary(int cacheCapacity) {
+        super(cacheCapacity);
+        metrics.counter("author_cache_hits", () -> authorCache().hits());
+        metrics.counter("author_cache_misses", () -> authorCache().misses());
+        metrics.counter("prefix_cache_hits", () -> prefixCache().hits());
+        metrics.counter("prefix_cache_misses", () -> prefixCache().misses());
+        metrics.gauge("books", this::size);
+        metrics.gauge("index_bytes", this::estimatedIndexBytes);
+    }
+
+    LibraryMetrics metrics() {
+        return metrics;
+    }
+
+    // Loads a books file through CatalogLoader, timed as one operation
+    CatalogLoader.Result loadBooksFromFile(String filePath) throws IOException {
+        long start = System.nanoTime();
+        try {
+            CatalogLoader.Result result = CatalogLoader.load(filePath, this);
+            invalidLines.add(result.invalidLines);
+            return result;
+        } finally {
+            loadBooksFromFile.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addBook(Book book) {
+        long start = System.nanoTime();
+        try {
+            super.addBook(book);
+            booksAdded.increment();
+        } finally {
+            addBook.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Book> books) {
+        long start = System.nanoTime();
+        try {
+            super.addAll(books);
+            booksAdded.add(books.size());
+        } finally {
+            addAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean deleteBook(String title) {
+        long start = System.nanoTime();
+        try {
+            boolean deleted = super.deleteBook(title);
+            if (deleted) booksDeleted.increment();
+            return deleted;
+        } finally {
+            deleteBook.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int deleteBooks(Collection<String> titles) {
+        long start = System.nanoTime();
+        try {
+            int deleted = super.deleteBooks(titles);
+            booksDeleted.add(deleted);
+            return deleted;
+        } finally {
+            deleteBooks.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    void applyBatch(List<? extends Mutation> batch) {
+        long start = System.nanoTime();
+        try {
+            super.applyBatch(batch);
+            for (Mutation mutation : batch) {
+                if (mutation.book != null) {
+                    booksAdded.increment();
+                } else if (mutation.applied) {
+                    booksDeleted.increment();
+                }
+            }
+        } finally {
+            applyBatch.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Book searchBookByTitle(String title) {
+        long start = System.nanoTime();
+        try {
+            Book book = super.searchBookByTitle(title);
+            if (book == null) titleMisses.increment();
+            return book;
+        } finally {
+            searchBookByTitle.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> getBooksByAuthor(String author) {
+        long start = System.nanoTime();
+        try {
+            return super.getBooksByAuthor(author);
+        } finally {
+            getBooksByAuthor.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Book updateBookStatus(String title, Status status) {
+        long start = System.nanoTime();
+        try {
+            return super.updateBookStatus(title, status);
+        } finally {
+            updateStatus.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int updateStatuses(Map<String, Status> updates) {
+        long start = System.nanoTime();
+        try {
+            return super.updateStatuses(updates);
+        } finally {
+            updateStatuses.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Book findAvailableCopy(String title) {
+        long start = System.nanoTime();
+        try {
+            return super.findAvailableCopy(title);
+        } finally {
+            findAvailableCopy.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Book checkout(String title) {
+        long start = System.nanoTime();
+        try {
+            Book copy = super.checkout(title);
+            if (copy == null) checkoutsRefused.increment();
+            return copy;
+        } finally {
+            checkout.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Book checkin(String title) {
+        long start = System.nanoTime();
+        try {
+            return super.checkin(title);
+        } finally {
+            checkin.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> getBooksByYearRange(int from, int to) {
+        long start = System.nanoTime();
+        try {
+            return super.getBooksByYearRange(from, to);
+        } finally {
+            getBooksByYearRange.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> getNewest(int n) {
+        long start = System.nanoTime();
+        try {
+            return super.getNewest(n);
+        } finally {
+            getNewest.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> getPage(int offset, int count, boolean byYear) {
+        long start = System.nanoTime();
+        try {
+            return super.getPage(offset, count, byYear);
+        } finally {
+            getPage.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            return super.searchTitlesByPrefix(prefix, limit);
+        } finally {
+            searchTitlesByPrefix.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> searchTitlesContaining(String text, int limit) {
+        long start = System.nanoTime();
+        try {
+            return super.searchTitlesContaining(text, limit);
+        } finally {
+            searchTitlesContaining.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> searchAuthorsByPrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            return super.searchAuthorsByPrefix(prefix, limit);
+        } finally {
+            searchAuthorsByPrefix.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> searchAuthorsContaining(String text, int limit) {
+        long start = System.nanoTime();
+        try {
+            return super.searchAuthorsContaining(text, limit);
+        } finally {
+            searchAuthorsContaining.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Book> find(BookFilter filter, int limit) {
+        long start = System.nanoTime();
+        try {
+            return super.find(filter, limit);
+        } finally {
+            find.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int count(BookFilter filter) {
+        long start = System.nanoTime();
+        try {
+            return super.count(filter);
+        } finally {
+            count.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void sortBooksByYear() {
+        long start = System.nanoTime();
+        try {
+            super.sortBooksByYear();
+        } finally {
+            sortBooksByYear.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveSnapshot(String filePath) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.saveSnapshot(filePath);
+        } finally {
+            saveSnapshot.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int loadSnapshot(String filePath) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.loadSnapshot(filePath);
+        } finally {
+            loadSnapshot.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package library;
+
+import java.util.*;
+
+// Growable int array, for posting lists that would be too heavy as boxed collections
+class IntList {
+    int[] values = new int[4];
+    int size;
+    // Values about to be added, counted ahead of a bulk append so that it reserves room once
+    int pending;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    // Makes room for count more values without further copying
+    void reserve(int count) {
+        if (size + count > values.length) {
+            values = Arrays.copyOf(values, size + count);
+        }
+    }
+
+    // Removes the first occurrence of value, keeping the order of the rest
+    void remove(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,1131 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Paths;
+
+// Class representing the Library. Safe for concurrent use: readers share a read lock and
+// never block each other, while mutations (sorting included) take the write lock.
+class Library {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private LinkedListNode<Book> head;
+    private LinkedListNode<Book> tail;
+    private int size;
+
+    // True while the list is known to be in year order, so sortBooksByYear can skip the work
+    private volatile boolean sorted = true;
+
+    private static final Comparator<LinkedListNode<Book>> BY_ORDINAL = Comparator.comparingInt(node -> node.ordinal);
+
+    // Case-insensitive lookup indexes, keyed by the keys of the books themselves; each
+    // bucket keeps its nodes in list order
+    private final Map<FoldedKey, List<LinkedListNode<Book>>> titleIndex = new HashMap<>();
+    private final Map<FoldedKey, List<LinkedListNode<Book>>> authorIndex = new HashMap<>();
+    // Copies by status of each title that has more than one; a single copy is its own answer
+    private final Map<FoldedKey, TitleCopies> copies = new HashMap<>();
+
+    // Year-ordered index; a stable sort never reorders books of the same year,
+    // so its buckets stay in list order without any maintenance on sort
+    private final NavigableMap<Integer, List<LinkedListNode<Book>>> yearIndex = new TreeMap<>();
+
+    // Nodes by ordinal, null where a book was deleted. New nodes get the next ordinal and
+    // a sort renumbers them all, so ascending ordinals always follow the list.
+    private final ArrayList<LinkedListNode<Book>> byOrdinal = new ArrayList<>();
+
+    // Ordinals of the books in each status, and how many there are, by Status.ordinal()
+    private final BitSet[] statusBits = new BitSet[Status.values().length];
+    private final int[] statusCounts = new int[Status.values().length];
+
+    {
+        for (int i = 0; i < statusBits.length; i++) {
+            statusBits[i] = new BitSet();
+        }
+    }
+
+    // Partial-match indexes over the keys of titleIndex and authorIndex
+    private final TextIndex titleText = new TextIndex();
+    private final TextIndex authorText = new TextIndex();
+    // Total length of the keys in titleText and authorText, for estimatedIndexBytes
+    private long indexKeyChars;
+    // Bumped by every change to the books, though not by sorting; see version()
+    private long version;
+
+    // Results of author lookups and title prefix searches by key. Mutations drop
+    // exactly the entries whose results they change, under the write lock; lookups fill
+    // them under the read lock, so a result never outlives a change it missed.
+    private final QueryCache authorCache;
+    private final QueryCache prefixCache;
+
+    public Library() {
+        this(QueryCache.DEFAULT_CAPACITY);
+    }
+
+    // Each cache holds up to cacheCapacity books; 0 turns caching off
+    public Library(int cacheCapacity) {
+        authorCache = new QueryCache(cacheCapacity);
+        prefixCache = new QueryCache(cacheCapacity);
+    }
+
+    public void addBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            LinkedListNode<Book> newNode = new LinkedListNode<>(book);
+            if (head == null) {
+                head = newNode;
+            } else {
+                tail.next = newNode;
+                sorted &= tail.data.getYearOfPublish() <= book.getYearOfPublish();
+            }
+            tail = newNode;
+            size++;
+            indexBook(newNode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Builds a chain for all the books first and links it after the tail in one step
+    public void addAll(Collection<Book> books) {
+        if (books.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            linkAll(books);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void linkAll(Collection<Book> books) {
+        LinkedListNode<Book> first = null;
+        LinkedListNode<Book> last = null;
+        for (Book book : books) {
+            LinkedListNode<Book> newNode = new LinkedListNode<>(book);
+            if (first == null) {
+                first = newNode;
+            } else {
+                last.next = newNode;
+                sorted &= last.data.getYearOfPublish() <= book.getYearOfPublish();
+            }
+            last = newNode;
+            indexBook(newNode);
+        }
+
+        if (head == null) {
+            head = first;
+        } else {
+            tail.next = first;
+            sorted &= tail.data.getYearOfPublish() <= first.data.getYearOfPublish();
+        }
+        tail = last;
+        size += books.size();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visits every book in list order; the library cannot change during the visit
+    void forEachBook(Consumer<? super Book> action) {
+        lock.readLock().lock();
+        try {
+            LinkedListNode<Book> temp = head;
+            while (temp != null) {
+                action.accept(temp.data);
+                temp = temp.next;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void saveSnapshot(String filePath) throws IOException {
+        // One read lock across both passes of the writer, so they see the same books
+        lock.readLock().lock();
+        try {
+            LibrarySnapshot.write(this, Paths.get(filePath));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Appends the books of a snapshot, like loading a books file does; returns how many were added
+    public int loadSnapshot(String filePath) throws IOException {
+        LibrarySnapshot.Contents snapshot = LibrarySnapshot.read(Paths.get(filePath));
+        if (snapshot.books.isEmpty()) return 0;
+
+        lock.writeLock().lock();
+        try {
+            restore(snapshot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return snapshot.books.size();
+    }
+
+    // linkAll for a snapshot, using its author dictionary: each author is looked up once
+    // and its bucket sized for all of its books, instead of indexing the author per book.
+    // The partial-search indexes are built here too, in bulk, so that the first prefix or
+    // substring query after a load does not pay for it under the read lock.
+    private void restore(LibrarySnapshot.Contents snapshot) {
+        List<List<LinkedListNode<Book>>> buckets = new ArrayList<>(snapshot.authors.length);
+        for (int i = 0; i < snapshot.authors.length; i++) {
+            FoldedKey authorKey = snapshot.authors[i];
+            List<LinkedListNode<Book>> bucket = authorIndex.get(authorKey);
+            if (bucket == null) {
+                bucket = new ArrayList<>(snapshot.bookCounts[i]);
+                authorIndex.put(authorKey, bucket);
+                authorText.add(authorKey.text());
+                indexKeyChars += authorKey.text().length();
+            }
+            buckets.add(bucket);
+            authorCache.invalidate(authorKey);
+        }
+
+        List<Book> books = snapshot.books;
+        byOrdinal.ensureCapacity(byOrdinal.size() + books.size());
+        LinkedListNode<Book> first = null;
+        LinkedListNode<Book> last = null;
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            LinkedListNode<Book> newNode = new LinkedListNode<>(book);
+            if (first == null) {
+                first = newNode;
+            } else {
+                last.next = newNode;
+                sorted &= last.data.getYearOfPublish() <= book.getYearOfPublish();
+            }
+            last = newNode;
+            indexPlacement(newNode);
+            buckets.get(snapshot.authorOf[i]).add(newNode);
+        }
+        titleText.build();
+        authorText.build();
+
+        if (head == null) {
+            head = first;
+        } else {
+            tail.next = first;
+            sorted &= tail.data.getYearOfPublish() <= first.data.getYearOfPublish();
+        }
+        tail = last;
+        size += books.size();
+        version++;
+        // Too many titles to drop their prefixes one at a time
+        prefixCache.clear();
+    }
+
+    // Prints every book through one buffered writer instead of a console write per book
+    public void displayBooks() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        lock.readLock().lock();
+        try {
+            if (head == null) {
+                out.write("The library has no books." + System.lineSeparator());
+            } else {
+                StringBuilder lines = new StringBuilder(LINE_BATCH + 256);
+                for (LinkedListNode<Book> temp = head; temp != null; temp = temp.next) {
+                    appendLine(lines, temp.data, out);
+                }
+                out.append(lines);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writes the books one per line, as displayBooks does, without flushing
+    static void writeBooks(List<Book> books, Writer out) throws IOException {
+        StringBuilder lines = new StringBuilder(LINE_BATCH + 256);
+        for (Book book : books) {
+            appendLine(lines, book, out);
+        }
+        out.append(lines);
+    }
+
+    // Lines are gathered in a StringBuilder and handed to the writer in batches of about this many chars
+    private static final int LINE_BATCH = 8192;
+
+    private static void appendLine(StringBuilder lines, Book book, Writer out) throws IOException {
+        book.appendTo(lines);
+        lines.append(System.lineSeparator());
+        if (lines.length() >= LINE_BATCH) {
+            out.append(lines);
+            lines.setLength(0);
+        }
+    }
+
+    // Up to count books from position offset onwards, in list order or, with byYear, in year
+    // order straight from the year index, which gives the order a sort would without sorting
+    public List<Book> getPage(int offset, int count, boolean byYear) {
+        List<Book> books = new ArrayList<>();
+        if (offset < 0 || count <= 0) return books;
+        lock.readLock().lock();
+        try {
+            if (byYear) {
+                // Whole years before the page are skipped by their size
+                int skip = offset;
+                for (List<LinkedListNode<Book>> bucket : yearIndex.values()) {
+                    if (skip >= bucket.size()) {
+                        skip -= bucket.size();
+                        continue;
+                    }
+                    for (int i = skip; i < bucket.size() && books.size() < count; i++) {
+                        books.add(bucket.get(i).data);
+                    }
+                    skip = 0;
+                    if (books.size() == count) break;
+                }
+            } else if (byOrdinal.size() == size) {
+                // No gaps since the last renumbering, so positions are ordinals
+                for (int i = offset; i < size && books.size() < count; i++) {
+                    books.add(byOrdinal.get(i).data);
+                }
+            } else {
+                LinkedListNode<Book> temp = head;
+                for (int i = 0; i < offset && temp != null; i++) {
+                    temp = temp.next;
+                }
+                for (; temp != null && books.size() < count; temp = temp.next) {
+                    books.add(temp.data);
+                }
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Book searchBookByTitle(String title) {
+        FoldedKey key = FoldedKey.probe(title);
+        lock.readLock().lock();
+        try {
+            List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+            return bucket != null ? bucket.get(0).data : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The returned list is unmodifiable, as it may be shared through the cache
+    public List<Book> getBooksByAuthor(String author) {
+        FoldedKey key = FoldedKey.probe(author);
+        lock.readLock().lock();
+        try {
+            List<Book> cached = authorCache.get(key, Integer.MAX_VALUE);
+            if (cached != null) return cached;
+
+            List<Book> books = new ArrayList<>();
+            List<LinkedListNode<Book>> bucket = authorIndex.get(key);
+            if (bucket != null) {
+                for (LinkedListNode<Book> node : bucket) {
+                    books.add(node.data);
+                }
+            }
+            return authorCache.put(new FoldedKey(author), books, Integer.MAX_VALUE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean deleteBook(String title) {
+        FoldedKey key = FoldedKey.probe(title);
+        lock.writeLock().lock();
+        try {
+            // The index tells us up front whether there is anything to unlink
+            List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+            if (bucket == null) return false;
+            LinkedListNode<Book> target = bucket.get(0);
+
+            if (head == target) {
+                head = head.next;
+                if (head == null) tail = null;
+            } else {
+                LinkedListNode<Book> temp = head;
+                while (temp.next != target) {
+                    temp = temp.next;
+                }
+                if (temp.next == tail) tail = temp;
+                temp.next = temp.next.next;
+            }
+            size--;
+
+            unindexBook(target);
+            // Deleted ordinals only cost space in the bitmaps, so they are reclaimed once they dominate
+            if (byOrdinal.size() - size > 1024 && byOrdinal.size() > 2 * size) {
+                renumber();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Deletes, for each title in order, the first remaining book with that title, ignoring
+    // case, exactly like calling deleteBook for each. All of them are unlinked in one walk of
+    // the list under one write lock, instead of a walk to the predecessor of each; returns
+    // how many books were deleted.
+    public int deleteBooks(Collection<String> titles) {
+        Map<FoldedKey, Integer> wanted = new HashMap<>();
+        for (String title : titles) {
+            wanted.merge(new FoldedKey(title), 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            return unlinkFirst(wanted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Applies a run of adds and deletes under one write lock, with the same outcome as calling
+    // addBook and deleteBook for each in order, and sets each mutation's applied flag. The adds
+    // are linked in one step and the deletes unlinked in one walk of the list.
+    void applyBatch(List<? extends Mutation> batch) {
+        lock.writeLock().lock();
+        try {
+            // Deletes take books from the front of a title's bucket and adds append to its end,
+            // so doing every add first changes nothing, provided each delete only counts the
+            // books that its title has at its turn: {books at this point, books to delete}
+            Map<FoldedKey, int[]> titles = new HashMap<>();
+            List<Book> adds = new ArrayList<>();
+            for (Mutation mutation : batch) {
+                FoldedKey key = mutation.book != null ? mutation.book.titleKey() : new FoldedKey(mutation.title);
+                int[] counts = titles.get(key);
+                if (counts == null) {
+                    List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+                    counts = new int[]{bucket != null ? bucket.size() : 0, 0};
+                    titles.put(key, counts);
+                }
+                if (mutation.book != null) {
+                    adds.add(mutation.book);
+                    counts[0]++;
+                    mutation.applied = true;
+                } else {
+                    mutation.applied = counts[0] > 0;
+                    if (mutation.applied) {
+                        counts[0]--;
+                        counts[1]++;
+                    }
+                }
+            }
+            if (!adds.isEmpty()) linkAll(adds);
+
+            Map<FoldedKey, Integer> deletes = new HashMap<>();
+            titles.forEach((key, counts) -> {
+                if (counts[1] > 0) deletes.put(key, counts[1]);
+            });
+            unlinkFirst(deletes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Unlinks the first books of each title, as many as asked for, in one walk of the list;
+    // returns how many were unlinked
+    private int unlinkFirst(Map<FoldedKey, Integer> wanted) {
+        // Buckets are in list order, so their first nodes are the ones deleteBook would take
+        BitSet targets = new BitSet(byOrdinal.size());
+        int count = 0;
+        for (Map.Entry<FoldedKey, Integer> title : wanted.entrySet()) {
+            List<LinkedListNode<Book>> bucket = titleIndex.get(title.getKey());
+            if (bucket == null) continue;
+            for (int i = 0; i < bucket.size() && i < title.getValue(); i++) {
+                targets.set(bucket.get(i).ordinal);
+                count++;
+            }
+        }
+        if (count == 0) return 0;
+
+        LinkedListNode<Book> previous = null;
+        for (LinkedListNode<Book> node = head; node != null; node = node.next) {
+            if (!targets.get(node.ordinal)) {
+                previous = node;
+                continue;
+            }
+            if (previous == null) {
+                head = node.next;
+            } else {
+                previous.next = node.next;
+            }
+            if (node == tail) tail = previous;
+        }
+        size -= count;
+        for (int i = targets.nextSetBit(0); i >= 0; i = targets.nextSetBit(i + 1)) {
+            unindexBook(byOrdinal.get(i));
+        }
+        if (byOrdinal.size() - size > 1024 && byOrdinal.size() > 2 * size) {
+            renumber();
+        }
+        return count;
+    }
+
+    // Changes the status of the first book with the title, ignoring case, in O(1) through the
+    // title index; returns false if no book has the title. Book stays immutable: the node gets
+    // a new Book, so every index still points at the right node and Books handed out earlier
+    // keep the status they were returned with.
+    public boolean updateStatus(String title, Status status) {
+        return updateBookStatus(title, status) != null;
+    }
+
+    // Same as updateStatus, but returns the book as updated, or null if no book has the title
+    public Book updateBookStatus(String title, Status status) {
+        FoldedKey key = FoldedKey.probe(title);
+        lock.writeLock().lock();
+        try {
+            return setStatus(key, status);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Applies the updates in iteration order under one write lock, so readers see all or
+    // none of them; returns how many of the titles were found
+    public int updateStatuses(Map<String, Status> updates) {
+        List<FoldedKey> keys = new ArrayList<>(updates.size());
+        for (String title : updates.keySet()) {
+            keys.add(new FoldedKey(title));
+        }
+        lock.writeLock().lock();
+        try {
+            int updated = 0;
+            Iterator<FoldedKey> key = keys.iterator();
+            for (Status status : updates.values()) {
+                if (setStatus(key.next(), status) != null) updated++;
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Book setStatus(FoldedKey key, Status status) {
+        List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+        if (bucket == null) return null;
+        LinkedListNode<Book> node = bucket.get(0);
+        if (node.data.getStatus() != status) {
+            changeStatus(node, status);
+        }
+        return node.data;
+    }
+
+    private void changeStatus(LinkedListNode<Book> node, Status status) {
+        Book book = node.data;
+        version++;
+        // Cached results hold the Book being replaced
+        authorCache.invalidate(book.authorKey());
+        prefixCache.invalidatePrefixesOf(book.titleKey());
+        statusBits[book.getStatus().ordinal()].clear(node.ordinal);
+        statusCounts[book.getStatus().ordinal()]--;
+        TitleCopies titleCopies = copies.isEmpty() ? null : copies.get(book.titleKey());
+        if (titleCopies != null) titleCopies.remove(node);
+        node.data = book.withStatus(status);
+        if (titleCopies != null) titleCopies.add(node);
+        statusBits[status.ordinal()].set(node.ordinal);
+        statusCounts[status.ordinal()]++;
+    }
+
+    // A copy of the title that is on the shelf (status EXIT), or null when none is, in O(1)
+    // however many copies the title has. Another desk may take it before this caller does;
+    // checkout is what actually claims a copy.
+    public Book findAvailableCopy(String title) {
+        FoldedKey key = FoldedKey.probe(title);
+        lock.readLock().lock();
+        try {
+            LinkedListNode<Book> node = copyIn(key, Status.EXIT);
+            return node != null ? node.data : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lends out a copy of the title that is on the shelf, in O(1), and returns it as it is
+    // now (BORROWED); null when every copy is out. Finding and lending happen under one
+    // write lock, so concurrent checkouts never get the same copy.
+    public Book checkout(String title) {
+        return moveCopy(FoldedKey.probe(title), Status.EXIT, Status.BORROWED);
+    }
+
+    // Puts a borrowed copy of the title back on the shelf (EXIT), in O(1), and returns it;
+    // null when no copy is borrowed
+    public Book checkin(String title) {
+        return moveCopy(FoldedKey.probe(title), Status.BORROWED, Status.EXIT);
+    }
+
+    // Number of copies of the title, ignoring case, that have the given status
+    public int countCopies(String title, Status status) {
+        FoldedKey key = FoldedKey.probe(title);
+        lock.readLock().lock();
+        try {
+            List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+            if (bucket == null) return 0;
+            if (bucket.size() == 1) return bucket.get(0).data.getStatus() == status ? 1 : 0;
+            return copies.get(key).count(status);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Book moveCopy(FoldedKey key, Status from, Status to) {
+        lock.writeLock().lock();
+        try {
+            LinkedListNode<Book> node = copyIn(key, from);
+            if (node == null) return null;
+            changeStatus(node, to);
+            return node.data;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The copy of the title that a checkout (from EXIT) or checkin (from BORROWED) would move
+    // next, left as it is; null when there is none
+    Book nextCopy(String title, Status from) {
+        lock.readLock().lock();
+        try {
+            LinkedListNode<Book> node = copyIn(FoldedKey.probe(title), from);
+            return node == null ? null : node.data;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Some copy of the title with the status, or null
+    private LinkedListNode<Book> copyIn(FoldedKey key, Status status) {
+        List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+        if (bucket == null) return null;
+        if (bucket.size() == 1) {
+            LinkedListNode<Book> node = bucket.get(0);
+            return node.data.getStatus() == status ? node : null;
+        }
+        return copies.get(key).peek(status);
+    }
+
+    // Lets a log name the exact copy that a checkout or checkin changed: the number of copies
+    // of its title before it in list order that have the same author and year and the given
+    // status, or -1 if it is not in the library. The year sort is stable, so copies that agree
+    // on author and year never trade places and the rank means the same copy after a sort.
+    int copyRank(Book copy, Status status) {
+        lock.readLock().lock();
+        try {
+            List<LinkedListNode<Book>> bucket = titleIndex.get(copy.titleKey());
+            if (bucket == null) return -1;
+            int rank = 0;
+            for (LinkedListNode<Book> node : bucket) {
+                if (node.data == copy) return rank;
+                if (isCopy(node.data, copy.getAuthor(), copy.getYearOfPublish(), status)) rank++;
+            }
+            return -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Moves the copy named by copyRank from one status to another and returns it as it is
+    // now; null if the title has no such copy
+    Book updateCopyStatus(String title, String author, int year, Status from, int rank, Status to) {
+        FoldedKey key = FoldedKey.probe(title);
+        lock.writeLock().lock();
+        try {
+            List<LinkedListNode<Book>> bucket = titleIndex.get(key);
+            if (bucket == null) return null;
+            for (LinkedListNode<Book> node : bucket) {
+                if (isCopy(node.data, author, year, from) && rank-- == 0) {
+                    if (from != to) changeStatus(node, to);
+                    return node.data;
+                }
+            }
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isCopy(Book book, String author, int year, Status status) {
+        return book.getStatus() == status && book.getYearOfPublish() == year && book.getAuthor().equals(author);
+    }
+
+    // Books published between from and to, both inclusive, in year order
+    public List<Book> getBooksByYearRange(int from, int to) {
+        List<Book> books = new ArrayList<>();
+        if (from > to) return books;
+        lock.readLock().lock();
+        try {
+            for (List<LinkedListNode<Book>> bucket : yearIndex.subMap(from, true, to, true).values()) {
+                for (LinkedListNode<Book> node : bucket) {
+                    books.add(node.data);
+                }
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The n most recently published books, newest first
+    public List<Book> getNewest(int n) {
+        lock.readLock().lock();
+        try {
+            List<Book> books = new ArrayList<>(Math.max(0, Math.min(n, size)));
+            for (List<LinkedListNode<Book>> bucket : yearIndex.descendingMap().values()) {
+                for (LinkedListNode<Book> node : bucket) {
+                    if (books.size() >= n) return books;
+                    books.add(node.data);
+                }
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Books whose title starts with the given text, ignoring case, in title order. The
+    // returned list is unmodifiable, as it may be shared through the cache.
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Book> cached = prefixCache.get(FoldedKey.probe(prefix), limit);
+            if (cached != null) return cached;
+            return prefixCache.put(new FoldedKey(prefix),
+                    partialMatch(titleText, titleIndex, foldCase(prefix), true, limit), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Books whose title contains the given text anywhere, ignoring case
+    public List<Book> searchTitlesContaining(String text, int limit) {
+        return partialMatch(titleText, titleIndex, foldCase(text), false, limit);
+    }
+
+    // Books by authors whose name starts with the given text, ignoring case
+    public List<Book> searchAuthorsByPrefix(String prefix, int limit) {
+        return partialMatch(authorText, authorIndex, foldCase(prefix), true, limit);
+    }
+
+    // Books by authors whose name contains the given text anywhere, ignoring case
+    public List<Book> searchAuthorsContaining(String text, int limit) {
+        return partialMatch(authorText, authorIndex, foldCase(text), false, limit);
+    }
+
+    private List<Book> partialMatch(TextIndex text, Map<FoldedKey, List<LinkedListNode<Book>>> index,
+                                    String query, boolean prefix, int limit) {
+        List<Book> books = new ArrayList<>();
+        if (limit <= 0) return books;
+        lock.readLock().lock();
+        try {
+            Predicate<String> collect = key -> {
+                for (LinkedListNode<Book> node : index.get(FoldedKey.probe(key))) {
+                    if (books.size() == limit) return false;
+                    books.add(node.data);
+                }
+                return books.size() < limit;
+            };
+            if (prefix) {
+                text.forEachWithPrefix(query, collect);
+            } else {
+                text.forEachContaining(query, collect);
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of books with the given status, kept current on every change
+    public int countByStatus(Status status) {
+        lock.readLock().lock();
+        try {
+            return statusCounts[status.ordinal()];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Books matching every condition of the filter, in list order, at most limit of them
+    public List<Book> find(BookFilter filter, int limit) {
+        List<Book> books = new ArrayList<>();
+        if (limit <= 0) return books;
+        lock.readLock().lock();
+        try {
+            visitMatches(filter, book -> {
+                books.add(book);
+                return books.size() < limit;
+            });
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int count(BookFilter filter) {
+        lock.readLock().lock();
+        try {
+            if (filter.author == null && !filter.hasYearRange()) {
+                return filter.status != null ? statusCounts[filter.status.ordinal()] : size;
+            }
+            int[] count = new int[1];
+            visitMatches(filter, book -> {
+                count[0]++;
+                return true;
+            });
+            return count[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visits matching books in list order until the visitor returns false. The most
+    // selective condition picks the candidates and the others are checked per candidate,
+    // or, for a year range and a status, the two ordinal sets are intersected.
+    private void visitMatches(BookFilter filter, Predicate<Book> visitor) {
+        if (filter.fromYear > filter.toYear) return;
+        BitSet status = filter.status != null ? statusBits[filter.status.ordinal()] : null;
+
+        if (filter.author != null) {
+            // Author buckets are small, so each of their books is simply probed
+            List<LinkedListNode<Book>> bucket = authorIndex.get(FoldedKey.probe(filter.author));
+            if (bucket == null) return;
+            for (LinkedListNode<Book> node : bucket) {
+                if (filter.matchesYear(node.data) && (status == null || status.get(node.ordinal))
+                        && !visitor.test(node.data)) return;
+            }
+            return;
+        }
+
+        BitSet matches = status;
+        if (filter.hasYearRange()) {
+            Collection<List<LinkedListNode<Book>>> buckets =
+                    yearIndex.subMap(filter.fromYear, true, filter.toYear, true).values();
+            int inRange = 0;
+            for (List<LinkedListNode<Book>> bucket : buckets) {
+                inRange += bucket.size();
+            }
+            if (status == null || statusCounts[filter.status.ordinal()] >= inRange) {
+                matches = new BitSet(byOrdinal.size());
+                for (List<LinkedListNode<Book>> bucket : buckets) {
+                    for (LinkedListNode<Book> node : bucket) {
+                        matches.set(node.ordinal);
+                    }
+                }
+                if (status != null) matches.and(status);
+            } else {
+                // Fewer books have the status than fall in the range: probe their years instead
+                for (int i = status.nextSetBit(0); i >= 0; i = status.nextSetBit(i + 1)) {
+                    Book book = byOrdinal.get(i).data;
+                    if (filter.matchesYear(book) && !visitor.test(book)) return;
+                }
+                return;
+            }
+        }
+
+        if (matches == null) {
+            for (LinkedListNode<Book> temp = head; temp != null; temp = temp.next) {
+                if (!visitor.test(temp.data)) return;
+            }
+            return;
+        }
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            if (!visitor.test(byOrdinal.get(i).data)) return;
+        }
+    }
+
+    // Stable bottom-up merge sort that only relinks the existing nodes. It runs under the
+    // write lock, so no reader ever walks a half-relinked list.
+    public void sortBooksByYear() {
+        if (sorted) return;
+
+        lock.writeLock().lock();
+        try {
+            if (!sorted) mergeSortByYear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void mergeSortByYear() {
+        for (int width = 1; width < size; width *= 2) {
+            LinkedListNode<Book> remaining = head;
+            LinkedListNode<Book> mergedHead = null;
+            LinkedListNode<Book> mergedTail = null;
+
+            while (remaining != null) {
+                LinkedListNode<Book> left = remaining;
+                LinkedListNode<Book> right = split(left, width);
+                remaining = split(right, width);
+
+                while (left != null || right != null) {
+                    LinkedListNode<Book> next;
+                    // Taking from the left run on ties keeps the sort stable
+                    if (right == null || (left != null
+                            && left.data.getYearOfPublish() <= right.data.getYearOfPublish())) {
+                        next = left;
+                        left = left.next;
+                    } else {
+                        next = right;
+                        right = right.next;
+                    }
+                    if (mergedTail == null) {
+                        mergedHead = next;
+                    } else {
+                        mergedTail.next = next;
+                    }
+                    mergedTail = next;
+                }
+            }
+
+            mergedTail.next = null;
+            head = mergedHead;
+            tail = mergedTail;
+        }
+
+        // Buckets mirror list order, which the fresh ordinals now spell out
+        renumber();
+        sortBuckets(titleIndex);
+        sortBuckets(authorIndex);
+        authorCache.clear();
+        prefixCache.clear();
+        sorted = true;
+    }
+
+    // Cuts the chain after at most count nodes and returns the rest
+    private static LinkedListNode<Book> split(LinkedListNode<Book> start, int count) {
+        if (start == null) return null;
+        for (int i = 1; i < count && start.next != null; i++) {
+            start = start.next;
+        }
+        LinkedListNode<Book> rest = start.next;
+        start.next = null;
+        return rest;
+    }
+
+    private static void sortBuckets(Map<FoldedKey, List<LinkedListNode<Book>>> index) {
+        for (List<LinkedListNode<Book>> bucket : index.values()) {
+            if (bucket.size() > 1) {
+                bucket.sort(BY_ORDINAL);
+            }
+        }
+    }
+
+    // Gives the nodes consecutive ordinals in list order and rebuilds the status bitmaps
+    private void renumber() {
+        byOrdinal.clear();
+        for (BitSet bits : statusBits) {
+            bits.clear();
+        }
+        for (LinkedListNode<Book> temp = head; temp != null; temp = temp.next) {
+            temp.ordinal = byOrdinal.size();
+            byOrdinal.add(temp);
+            statusBits[temp.data.getStatus().ordinal()].set(temp.ordinal);
+        }
+    }
+
+    private void indexBook(LinkedListNode<Book> node) {
+        Book book = node.data;
+        version++;
+        indexPlacement(node);
+
+        FoldedKey authorKey = book.authorKey();
+        List<LinkedListNode<Book>> authors = authorIndex.computeIfAbsent(authorKey, k -> new ArrayList<>());
+        authors.add(node);
+        if (authors.size() == 1) {
+            authorText.add(book.getAuthor());
+            indexKeyChars += book.getAuthor().length();
+        }
+        authorCache.invalidate(authorKey);
+        prefixCache.invalidatePrefixesOf(book.titleKey());
+    }
+
+    // Indexes everything about the node but its author, leaving the caches alone
+    private void indexPlacement(LinkedListNode<Book> node) {
+        Book book = node.data;
+        node.ordinal = byOrdinal.size();
+        byOrdinal.add(node);
+        statusBits[book.getStatus().ordinal()].set(node.ordinal);
+        statusCounts[book.getStatus().ordinal()]++;
+
+        FoldedKey titleKey = book.titleKey();
+        // Most titles are unique, so a title's first book gets an immutable singleton bucket,
+        // a third the size of a list, swapped for a list when a second copy arrives
+        List<LinkedListNode<Book>> titles = titleIndex.putIfAbsent(titleKey, Collections.singletonList(node));
+        if (titles != null) {
+            if (titles.size() == 1) {
+                titles = new ArrayList<>(titles);
+                titleIndex.put(titleKey, titles);
+            }
+            titles.add(node);
+        }
+        if (titles == null) {
+            titleText.add(book.getTitle());
+            indexKeyChars += book.getTitle().length();
+        } else if (titles.size() == 2) {
+            TitleCopies titleCopies = new TitleCopies();
+            titleCopies.add(titles.get(0));
+            titleCopies.add(node);
+            copies.put(titleKey, titleCopies);
+        } else if (titles.size() > 2) {
+            copies.get(titleKey).add(node);
+        }
+        yearIndex.computeIfAbsent(book.getYearOfPublish(), k -> new ArrayList<>()).add(node);
+    }
+
+    private void unindexBook(LinkedListNode<Book> node) {
+        Book book = node.data;
+        version++;
+        byOrdinal.set(node.ordinal, null);
+        statusBits[book.getStatus().ordinal()].clear(node.ordinal);
+        statusCounts[book.getStatus().ordinal()]--;
+
+        FoldedKey titleKey = book.titleKey();
+        FoldedKey authorKey = book.authorKey();
+        int titleCopies = titleIndex.get(titleKey).size();
+        if (titleCopies == 2) {
+            copies.remove(titleKey);
+        } else if (titleCopies > 2) {
+            copies.get(titleKey).remove(node);
+        }
+        if (removeFromBucket(titleIndex, titleKey, node)) {
+            titleText.remove(book.getTitle());
+            indexKeyChars -= book.getTitle().length();
+        }
+        if (removeFromBucket(authorIndex, authorKey, node)) {
+            authorText.remove(book.getAuthor());
+            indexKeyChars -= book.getAuthor().length();
+        }
+        removeFromBucket(yearIndex, book.getYearOfPublish(), node);
+        authorCache.invalidate(authorKey);
+        prefixCache.invalidatePrefixesOf(titleKey);
+    }
+
+    // Rough heap size of the lookup indexes, from their entry counts and typical object
+    // sizes on a 64-bit JVM with compressed references; the books themselves are not counted.
+    // Per map key: entry 40, the folded String in the text index 40 plus one byte per char,
+    // bucket list 40 plus its array; the keys themselves belong to the books.
+    long estimatedIndexBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (titleIndex.size() + authorIndex.size()) * 120L + indexKeyChars;
+            bytes += yearIndex.size() * 120L;
+            // Each node sits in three buckets and in byOrdinal
+            bytes += size * 12L + byOrdinal.size() * 4L;
+            // Per title with several copies: entry 40, TitleCopies and its list 56, three stacks
+            // of 40 plus their arrays, which hold 4 bytes per copy on top
+            bytes += copies.size() * 220L;
+            for (BitSet bits : statusBits) {
+                bytes += bits.size() / 8;
+            }
+            return bytes + titleText.estimatedBytes() + authorText.estimatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Changes whenever a book is added, deleted or changes status, so that a caller that
+    // remembers it can tell whether anything else touched the library since
+    long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    QueryCache authorCache() {
+        return authorCache;
+    }
+
+    QueryCache prefixCache() {
+        return prefixCache;
+    }
+
+    // Returns true when the bucket became empty and its key was dropped
+    private static <K> boolean removeFromBucket(Map<K, List<LinkedListNode<Book>>> index, K key,
+                                                LinkedListNode<Book> node) {
+        List<LinkedListNode<Book>> bucket = index.get(key);
+        if (bucket.size() == 1) {
+            // Possibly a singleton bucket, which cannot be emptied in place
+            index.remove(key);
+            return true;
+        }
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i) == node) {
+                bucket.remove(i);
+                break;
+            }
+        }
+        if (bucket.isEmpty()) {
+            index.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    // Folds a string the same way String.equalsIgnoreCase compares characters,
+    // so that equal keys are exactly the case-insensitively equal strings
+    static String foldCase(String s) {
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) break;
+            i++;
+        }
+        if (i == s.length()) return s; // Already folded, the common case for lookups
+
+        // ASCII needs no code point handling, and titles are mostly ASCII
+        char[] chars = s.toCharArray();
+        while (i < chars.length && chars[i] < 0x80) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') chars[i] += 'a' - 'A';
+            i++;
+        }
+        if (i == chars.length) return new String(chars);
+
+        StringBuilder sb = new StringBuilder(s.length()).append(chars, 0, i);
+        while (i < s.length()) {
+            int cp = s.codePointAt(i);
+            sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+
+    // foldCase(s).hashCode(), computed without building the folded string
+    static int foldedHash(String s) {
+        int hash = 0;
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+                i++;
+                continue;
+            }
+            int cp = s.codePointAt(i);
+            int folded = Character.toLowerCase(Character.toUpperCase(cp));
+            if (Character.isBmpCodePoint(folded)) {
+                hash = 31 * hash + folded;
+            } else {
+                hash = 31 * (31 * hash + Character.highSurrogate(folded)) + Character.lowSurrogate(folded);
+            }
+            i += Character.charCount(cp);
+        }
+        return hash;
+    }
+}
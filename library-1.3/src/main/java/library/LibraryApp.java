@@ -0,0 +1,620 @@
+package library;
+
+import java.util.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Main Application Class with CLI
+class LibraryApp {
+    private static InstrumentedLibrary library = new InstrumentedLibrary();
+    private static Scanner scanner = new Scanner(System.in);
+    // Set when started with --store <dir>; keeps changes across restarts
+    private static LibraryStore store;
+    // Set when started with --metrics <file>; the metrics are written there on exit
+    private static Path metricsPath;
+    // Remembers the lines of the last synced file, so that the next sync only parses changes;
+    // with a store, it logs the changes and keeps the lines there for the next process
+    private static CatalogSync catalogSync = new CatalogSync(library);
+    // Partial searches and filters show at most this many books per section
+    private static final int PARTIAL_MATCH_LIMIT = 20;
+    // Books per page when displaying the whole library
+    private static final int PAGE_SIZE = 20;
+    // Menu numbers never change, as piped and scripted input depends on them: 1-8 are those of
+    // the first release, with Exit at 8, and a new option takes the next number after the last
+    private static final int MENU_OPTIONS = 18;
+
+    public static void main(String[] args) {
+        String filePath = null;
+        String storeDirectory = null;
+        String batchPath = null;
+        String servePort = null;
+        String syncPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--store") && i + 1 < args.length) {
+                storeDirectory = args[++i];
+            } else if (args[i].equals("--batch") && i + 1 < args.length) {
+                batchPath = args[++i];
+            } else if (args[i].equals("--serve") && i + 1 < args.length) {
+                servePort = args[++i];
+            } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                metricsPath = Paths.get(args[++i]);
+            } else if (args[i].equals("--sync") && i + 1 < args.length) {
+                syncPath = args[++i];
+            } else {
+                filePath = args[i];
+            }
+        }
+
+        if (storeDirectory != null) {
+            try {
+                store = LibraryStore.open(storeDirectory, library);
+                catalogSync = new CatalogSync(library, store);
+                System.out.println(library.size() + " books restored from " + storeDirectory + ".");
+            } catch (IOException e) {
+                System.out.println("Error opening the store: " + e.getMessage());
+                return;
+            }
+        }
+
+        // Check if a file path is provided as a command-line argument
+        if (filePath != null) {
+            loadBooksFromFile(filePath);
+        }
+        if (syncPath != null) {
+            syncWithFile(syncPath);
+        } else if (filePath == null && batchPath == null && servePort == null) {
+            System.out.println("No file path provided. You can load books using the menu options.");
+        }
+
+        if (servePort != null) {
+            // Read once by the JDK server, so before the first one starts; a -D setting still wins
+            System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+            serve(servePort);
+            return;
+        }
+
+        if (batchPath != null) {
+            runBatch(batchPath);
+            closeStore();
+            exportMetrics();
+            return;
+        }
+
+        boolean exit = false;
+
+        while (!exit) {
+            displayMenu();
+            int choice = getUserChoice();
+
+            switch (choice) {
+                case 1:
+                    loadBooksFromFileInteractive();
+                    break;
+                case 2:
+                    displayAllBooks();
+                    break;
+                case 3:
+                    searchBookByTitle();
+                    break;
+                case 4:
+                    getBooksByAuthor();
+                    break;
+                case 5:
+                    addNewBook();
+                    break;
+                case 6:
+                    deleteBook();
+                    break;
+                case 7:
+                    sortBooksByYear();
+                    break;
+                case 8:
+                    exit = true;
+                    System.out.println("Exiting the Library Application. Goodbye!");
+                    break;
+                case 9:
+                    getBooksByYearRange();
+                    break;
+                case 10:
+                    getNewestBooks();
+                    break;
+                case 11:
+                    saveSnapshot();
+                    break;
+                case 12:
+                    loadSnapshot();
+                    break;
+                case 13:
+                    searchPartial();
+                    break;
+                case 14:
+                    filterBooks();
+                    break;
+                case 15:
+                    changeStatus();
+                    break;
+                case 16:
+                    showCacheStatistics();
+                    break;
+                case 17:
+                    showMetrics();
+                    break;
+                case 18:
+                    syncWithFileInteractive();
+                    break;
+                default:
+                    System.out.println("Invalid choice. Please select a valid option (1-" + MENU_OPTIONS + ").");
+            }
+        }
+
+        scanner.close();
+        closeStore();
+        exportMetrics();
+    }
+
+    private static void exportMetrics() {
+        if (metricsPath == null) return;
+        try {
+            library.metrics().export(metricsPath);
+            System.out.println("Metrics written to " + metricsPath + ".");
+        } catch (IOException e) {
+            System.out.println("Error writing the metrics: " + e.getMessage());
+        }
+    }
+
+    private static void closeStore() {
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.out.println("Error closing the store: " + e.getMessage());
+            }
+        }
+    }
+
+    // Serves the library over HTTP instead of the menu, until the process is stopped
+    private static void serve(String port) {
+        try {
+            LibraryServer server = new LibraryServer(library, store, Integer.parseInt(port));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                closeStore();
+                exportMetrics();
+            }));
+            System.out.println("Serving " + library.size() + " books on http://localhost:" + server.port() + "/books");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid port: " + port);
+            closeStore();
+        } catch (IOException e) {
+            System.out.println("Error starting the server: " + e.getMessage());
+            closeStore();
+        }
+    }
+
+    // Runs the commands in a script file, or on standard input for "-", instead of the menu
+    private static void runBatch(String batchPath) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try (BufferedReader in = batchPath.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in), 1 << 16)
+                : Files.newBufferedReader(Paths.get(batchPath))) {
+            new BatchRunner(library, store, out).run(in);
+        } catch (IOException e) {
+            try {
+                out.flush();
+            } catch (IOException ignored) {
+                // Reported below either way
+            }
+            System.out.println("Error running the batch: " + e.getMessage());
+        }
+    }
+
+    // Bulk loads are made durable with a fresh base snapshot rather than one log record per book
+    private static void checkpointStore() {
+        if (store == null) return;
+        try {
+            store.checkpoint();
+        } catch (IOException e) {
+            System.out.println("Error saving the store: " + e.getMessage());
+        }
+    }
+
+    // Display the interactive menu
+    private static void displayMenu() {
+        System.out.println("\n=== Library Menu ===");
+        System.out.println("1. Load books from file");
+        System.out.println("2. Display all books");
+        System.out.println("3. Search book by title");
+        System.out.println("4. Get books by author");
+        System.out.println("5. Add a new book");
+        System.out.println("6. Delete a book");
+        System.out.println("7. Sort books by year");
+        System.out.println("8. Exit");
+        System.out.println("9. Get books by year range");
+        System.out.println("10. Show newest books");
+        System.out.println("11. Save snapshot");
+        System.out.println("12. Load snapshot");
+        System.out.println("13. Search titles and authors by partial text");
+        System.out.println("14. Filter books by status, author and years");
+        System.out.println("15. Change a book's status (borrow, return, ban)");
+        System.out.println("16. Show cache statistics");
+        System.out.println("17. Show operation metrics");
+        System.out.println("18. Sync with a books file (apply only the changes)");
+        System.out.print("Enter your choice (1-" + MENU_OPTIONS + "): ");
+    }
+
+    // Get user's menu choice
+    private static int getUserChoice() {
+        int choice = -1;
+        try {
+            choice = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            // Invalid input; choice remains -1
+        }
+        return choice;
+    }
+
+    // Interactive method to load books from a file
+    private static void loadBooksFromFileInteractive() {
+        System.out.print("Enter the path to the books file (e.g., books.txt): ");
+        String filePath = scanner.nextLine().trim();
+        loadBooksFromFile(filePath);
+    }
+
+    // Method to load books from a specified file
+    private static void loadBooksFromFile(String filePath) {
+        try {
+            CatalogLoader.Result result = library.loadBooksFromFile(filePath);
+            System.out.println(result.booksLoaded + " books loaded successfully from " + filePath + ".");
+            checkpointStore();
+            if (result.invalidLines > 0) {
+                System.out.println(result.invalidLines + " invalid lines were skipped:");
+                result.errors.forEach(error -> System.out.println("  " + error));
+                if (result.invalidLines > result.errors.size()) {
+                    System.out.println("  ... and " + (result.invalidLines - result.errors.size()) + " more");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    private static void syncWithFileInteractive() {
+        System.out.print("Enter the path to the books file (e.g., books.txt): ");
+        syncWithFile(scanner.nextLine().trim());
+    }
+
+    // Makes the library match the file: unlike loading, books already present are not added again
+    private static void syncWithFile(String filePath) {
+        try {
+            long start = System.nanoTime();
+            CatalogSync.Result result = catalogSync.sync(filePath);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Synced with " + filePath + " in " + millis + " ms"
+                    + (result.fullComparison ? " (compared every line)" : " (only changed lines compared)") + ":");
+            System.out.println("  " + result.inserted + " inserted, " + result.deleted + " deleted, "
+                    + result.statusChanged + " status changes, " + result.replaced + " replaced, "
+                    + result.unchanged + " unchanged");
+            if (result.duplicateTitles > 0) {
+                System.out.println("  " + result.duplicateTitles + " lines repeated a title and were ignored");
+            }
+            if (result.invalidLines > 0) {
+                System.out.println(result.invalidLines + " invalid lines were skipped:");
+                result.errors.forEach(error -> System.out.println("  " + error));
+                if (result.invalidLines > result.errors.size()) {
+                    System.out.println("  ... and " + (result.invalidLines - result.errors.size()) + " more");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    // Page through all books in year order. The year index supplies the order, so the
+    // library is not sorted first, and each page goes out through one buffered writer.
+    private static void displayAllBooks() {
+        if (library.size() == 0) {
+            System.out.println("The library has no books.");
+            return;
+        }
+        BookCursor cursor = new BookCursor(library, PAGE_SIZE, true);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try {
+            while (true) {
+                out.write(System.lineSeparator() + "Books in the library, page " + cursor.pageNumber()
+                        + " of " + cursor.pageCount() + ":" + System.lineSeparator());
+                Library.writeBooks(cursor.current(), out);
+                out.write("n = next page, p = previous page, q = back to the menu: ");
+                out.flush();
+
+                String input = scanner.nextLine().trim().toLowerCase();
+                if (input.equals("n")) {
+                    if (!cursor.next()) System.out.println("This is the last page.");
+                } else if (input.equals("p")) {
+                    if (!cursor.previous()) System.out.println("This is the first page.");
+                } else if (input.equals("q")) {
+                    return;
+                } else {
+                    System.out.println("Invalid choice. Please enter n, p or q.");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing the books: " + e.getMessage());
+        }
+    }
+
+    // Search for a book by its title
+    private static void searchBookByTitle() {
+        System.out.print("Enter the title of the book to search: ");
+        String title = scanner.nextLine().trim();
+        Book foundBook = library.searchBookByTitle(title);
+        System.out.println(foundBook != null ? foundBook : "Book not found.");
+    }
+
+    // Get all books by a specific author
+    private static void getBooksByAuthor() {
+        System.out.print("Enter the author's name: ");
+        String author = scanner.nextLine().trim();
+        List<Book> authorBooks = library.getBooksByAuthor(author);
+        if (!authorBooks.isEmpty()) {
+            System.out.println("\nBooks by '" + author + "':");
+            authorBooks.forEach(System.out::println);
+        } else {
+            System.out.println("No books found by " + author + ".");
+        }
+    }
+
+    // Add a new book to the library
+    private static void addNewBook() {
+        System.out.print("Enter author name: ");
+        String author = scanner.nextLine().trim();
+
+        System.out.print("Enter book title: ");
+        String title = scanner.nextLine().trim();
+
+        int year = -1;
+        while (year < 0) {
+            System.out.print("Enter year of publication: ");
+            try {
+                year = Integer.parseInt(scanner.nextLine().trim());
+                if (year < 0) {
+                    System.out.println("Year cannot be negative. Please try again.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid year. Please enter a valid integer.");
+            }
+        }
+
+        Status status = null;
+        while (status == null) {
+            System.out.print("Enter status (BANNED, BORROWED, EXIT): ");
+            String statusInput = scanner.nextLine().trim().toUpperCase();
+            try {
+                status = Status.valueOf(statusInput);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid status. Please enter one of: BANNED, BORROWED, EXIT.");
+            }
+        }
+
+        Book newBook = new Book(author, title, year, status);
+        if (store != null) {
+            try {
+                store.addBook(newBook);
+            } catch (IOException e) {
+                System.out.println("Error saving the book: " + e.getMessage());
+                return;
+            }
+        } else {
+            library.addBook(newBook);
+        }
+        System.out.println("Book added successfully: " + newBook);
+    }
+
+    // Delete a book from the library
+    private static void deleteBook() {
+        System.out.print("Enter the title of the book to delete: ");
+        String title = scanner.nextLine().trim();
+        boolean success;
+        if (store != null) {
+            try {
+                success = store.deleteBook(title);
+            } catch (IOException e) {
+                System.out.println("Error saving the deletion: " + e.getMessage());
+                return;
+            }
+        } else {
+            success = library.deleteBook(title);
+        }
+        System.out.println(success ? "Book deleted successfully." : "Book not found. Deletion failed.");
+    }
+
+    // Borrow, return or ban a book by setting its status
+    private static void changeStatus() {
+        System.out.print("Enter the title of the book: ");
+        String title = scanner.nextLine().trim();
+
+        Status status = null;
+        while (status == null) {
+            System.out.print("Enter the new status (BANNED, BORROWED, EXIT): ");
+            try {
+                status = Status.valueOf(scanner.nextLine().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid status. Please enter one of: BANNED, BORROWED, EXIT.");
+            }
+        }
+
+        boolean success;
+        if (store != null) {
+            try {
+                success = store.updateStatus(title, status);
+            } catch (IOException e) {
+                System.out.println("Error saving the status change: " + e.getMessage());
+                return;
+            }
+        } else {
+            success = library.updateStatus(title, status);
+        }
+        System.out.println(success ? "Status changed to " + status.name() + "." : "Book not found. Status unchanged.");
+    }
+
+    // Hit, miss, eviction and invalidation counts of the lookup caches
+    private static void showCacheStatistics() {
+        System.out.println("Author lookups: " + library.authorCache());
+        System.out.println("Title prefix searches: " + library.prefixCache());
+    }
+
+    // Latency percentiles of every operation used so far, with counters and gauges
+    private static void showMetrics() {
+        System.out.print(library.metrics().report());
+    }
+
+    // Get all books published within a range of years
+    private static void getBooksByYearRange() {
+        int from = readNonNegativeInt("Enter the first year: ");
+        int to = readNonNegativeInt("Enter the last year: ");
+        List<Book> books = library.getBooksByYearRange(from, to);
+        if (!books.isEmpty()) {
+            System.out.println("\nBooks published " + from + "-" + to + ":");
+            books.forEach(System.out::println);
+        } else {
+            System.out.println("No books published between " + from + " and " + to + ".");
+        }
+    }
+
+    // Show the most recently published books
+    private static void getNewestBooks() {
+        int count = readNonNegativeInt("How many books? ");
+        List<Book> books = library.getNewest(count);
+        if (!books.isEmpty()) {
+            System.out.println("\nNewest books:");
+            books.forEach(System.out::println);
+        } else {
+            System.out.println("The library has no books.");
+        }
+    }
+
+    // Titles starting with the text come first, then titles and authors containing it
+    private static void searchPartial() {
+        System.out.print("Enter part of a title or author: ");
+        String text = scanner.nextLine().trim();
+        Set<Book> titleMatches = new LinkedHashSet<>(library.searchTitlesByPrefix(text, PARTIAL_MATCH_LIMIT));
+        for (Book book : library.searchTitlesContaining(text, PARTIAL_MATCH_LIMIT)) {
+            if (titleMatches.size() == PARTIAL_MATCH_LIMIT) break;
+            titleMatches.add(book);
+        }
+        List<Book> authorMatches = library.searchAuthorsContaining(text, PARTIAL_MATCH_LIMIT);
+        if (titleMatches.isEmpty() && authorMatches.isEmpty()) {
+            System.out.println("No titles or authors contain '" + text + "'.");
+            return;
+        }
+        if (!titleMatches.isEmpty()) {
+            System.out.println("\nTitles matching '" + text + "':");
+            titleMatches.forEach(System.out::println);
+        }
+        if (!authorMatches.isEmpty()) {
+            System.out.println("\nBooks by authors matching '" + text + "':");
+            authorMatches.forEach(System.out::println);
+        }
+    }
+
+    // Count and list the books matching any combination of status, author and years
+    private static void filterBooks() {
+        System.out.println("Books: " + library.countByStatus(Status.EXIT) + " EXIT, "
+                + library.countByStatus(Status.BORROWED) + " BORROWED, "
+                + library.countByStatus(Status.BANNED) + " BANNED.");
+        BookFilter filter = new BookFilter();
+
+        while (true) {
+            System.out.print("Status (BANNED, BORROWED, EXIT, or empty for any): ");
+            String statusInput = scanner.nextLine().trim().toUpperCase();
+            if (statusInput.isEmpty()) break;
+            try {
+                filter.status(Status.valueOf(statusInput));
+                break;
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid status. Please enter one of: BANNED, BORROWED, EXIT.");
+            }
+        }
+
+        System.out.print("Author (empty for any): ");
+        String author = scanner.nextLine().trim();
+        if (!author.isEmpty()) filter.author(author);
+
+        System.out.print("Limit to a range of years? (y/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            filter.years(readNonNegativeInt("Enter the first year: "), readNonNegativeInt("Enter the last year: "));
+        }
+
+        int matches = library.count(filter);
+        if (matches == 0) {
+            System.out.println("No books match.");
+            return;
+        }
+        System.out.println("\n" + matches + " books match" + (matches > PARTIAL_MATCH_LIMIT
+                ? ", showing the first " + PARTIAL_MATCH_LIMIT + ":" : ":"));
+        library.find(filter, PARTIAL_MATCH_LIMIT).forEach(System.out::println);
+    }
+
+    // Prompt until a non-negative integer is entered
+    private static int readNonNegativeInt(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            try {
+                int value = Integer.parseInt(scanner.nextLine().trim());
+                if (value >= 0) {
+                    return value;
+                }
+                System.out.println("Value cannot be negative. Please try again.");
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number. Please enter a valid integer.");
+            }
+        }
+    }
+
+    // Write the whole library to a binary snapshot file
+    private static void saveSnapshot() {
+        System.out.print("Enter the path of the snapshot file to write: ");
+        String filePath = scanner.nextLine().trim();
+        try {
+            library.saveSnapshot(filePath);
+            System.out.println(library.size() + " books saved to " + filePath + ".");
+        } catch (IOException e) {
+            System.out.println("Error writing the snapshot: " + e.getMessage());
+        }
+    }
+
+    // Add the books stored in a binary snapshot file
+    private static void loadSnapshot() {
+        System.out.print("Enter the path of the snapshot file to load: ");
+        String filePath = scanner.nextLine().trim();
+        try {
+            int loaded = library.loadSnapshot(filePath);
+            System.out.println(loaded + " books loaded successfully from " + filePath + ".");
+            checkpointStore();
+        } catch (IOException e) {
+            System.out.println("Error reading the snapshot: " + e.getMessage());
+        }
+    }
+
+    // Sort books by their year of publication
+    private static void sortBooksByYear() {
+        if (store != null) {
+            try {
+                store.sortBooksByYear();
+            } catch (IOException e) {
+                System.out.println("Error saving the sort: " + e.getMessage());
+                return;
+            }
+        } else {
+            library.sortBooksByYear();
+        }
+        System.out.println("Books have been sorted by year of publication.");
+    }
+}
@@ -0,0 +1,126 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Named latency histograms, counters and gauges, with a text report and JSON and
+// Prometheus text exports. Everything is registered up front, before the metrics are
+// shared, so recording never touches the maps.
+class LibraryMetrics {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    // The same percentiles as JSON field names and as Prometheus quantiles
+    private static final String[] JSON_NAMES = {"p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos"};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final Map<String, LatencyHistogram> operations = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> counters = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+
+    LatencyHistogram operation(String name) {
+        return operations.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    LongAdder counter(String name) {
+        LongAdder counter = new LongAdder();
+        counters.put(name, counter::sum);
+        return counter;
+    }
+
+    // A counter kept elsewhere, read when the metrics are reported
+    void counter(String name, LongSupplier value) {
+        counters.put(name, value);
+    }
+
+    void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // Operations that ran at least once, in microseconds, then counters and gauges
+    String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-24s %10s %10s %10s %10s %10s %10s %10s%n", "operation", "calls",
+                "mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        operations.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            if (snapshot.count == 0) return;
+            report.append(String.format("%-24s %10d %10.1f", name, snapshot.count, snapshot.meanNanos() / 1e3));
+            for (double percentile : PERCENTILES) {
+                report.append(String.format(" %10.1f", snapshot.percentileNanos(percentile) / 1e3));
+            }
+            report.append(String.format(" %10.1f%n", snapshot.maxNanos / 1e3));
+        });
+        counters.forEach((name, value) -> report.append(String.format("%-24s %10d%n", name, value.getAsLong())));
+        gauges.forEach((name, value) -> report.append(String.format("%-24s %10d%n", name, value.getAsLong())));
+        return report.toString();
+    }
+
+    void writeJson(Writer out) throws IOException {
+        StringBuilder json = new StringBuilder("{\"operations\":{");
+        String separator = "";
+        for (Map.Entry<String, LatencyHistogram> operation : operations.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = operation.getValue().snapshot();
+            json.append(separator).append('"').append(operation.getKey()).append("\":{\"count\":")
+                    .append(snapshot.count).append(",\"totalNanos\":").append(snapshot.totalNanos)
+                    .append(",\"meanNanos\":").append(snapshot.meanNanos());
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                json.append(",\"").append(JSON_NAMES[i]).append("\":").append(snapshot.percentileNanos(PERCENTILES[i]));
+            }
+            json.append(",\"maxNanos\":").append(snapshot.maxNanos).append('}');
+            separator = ",";
+        }
+        json.append("},\"counters\":");
+        appendValues(json, counters);
+        json.append(",\"gauges\":");
+        appendValues(json, gauges);
+        out.write(json.append('}').append(System.lineSeparator()).toString());
+    }
+
+    private static void appendValues(StringBuilder json, Map<String, LongSupplier> values) {
+        json.append('{');
+        String separator = "";
+        for (Map.Entry<String, LongSupplier> value : values.entrySet()) {
+            json.append(separator).append('"').append(value.getKey()).append("\":").append(value.getValue().getAsLong());
+            separator = ",";
+        }
+        json.append('}');
+    }
+
+    // Prometheus text exposition format; latencies are summaries in seconds
+    void writePrometheus(Writer out) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append("# TYPE library_operation_seconds summary\n");
+        operations.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            String labels = "{operation=\"" + name + "\"";
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                text.append("library_operation_seconds").append(labels).append(",quantile=\"").append(QUANTILES[i])
+                        .append("\"} ").append(snapshot.percentileNanos(PERCENTILES[i]) / 1e9).append('\n');
+            }
+            text.append("library_operation_seconds_sum").append(labels).append("} ")
+                    .append(snapshot.totalNanos / 1e9).append('\n');
+            text.append("library_operation_seconds_count").append(labels).append("} ")
+                    .append(snapshot.count).append('\n');
+        });
+        counters.forEach((name, value) -> text.append("# TYPE library_").append(name).append("_total counter\n")
+                .append("library_").append(name).append("_total ").append(value.getAsLong()).append('\n'));
+        gauges.forEach((name, value) -> text.append("# TYPE library_").append(name).append(" gauge\n")
+                .append("library_").append(name).append(' ').append(value.getAsLong()).append('\n'));
+        out.write(text.toString());
+    }
+
+    // Writes JSON to a .json file and Prometheus text to any other, replacing the file
+    void export(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path)) {
+            if (path.getFileName().toString().endsWith(".json")) {
+                writeJson(out);
+            } else {
+                writePrometheus(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package library;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+// Serves one shared Library over HTTP on the loopback interface, answering in JSON:
+//   GET    /books?title=T                   the first book with the title
+//   GET    /books/author?name=A             books by the author
+//   GET    /books/years?from=Y&to=Z         books published in the range
+//   POST   /books?author=A&title=T&year=Y&status=S
+//   DELETE /books?title=T
+//   POST   /books/status?title=T&status=S
+//   POST   /books/checkout?title=T          lends out a copy on the shelf (EXIT -> BORROWED)
+//   POST   /books/checkin?title=T           returns a borrowed copy (BORROWED -> EXIT)
+// Parameters come from the query string or a form-encoded body. Each request runs on its
+// own virtual thread where the JDK has them (21 and later) and on a cached pool otherwise.
+// The JDK server leaves Nagle's algorithm on unless -Dsun.net.httpserver.nodelay=true is
+// given, so small responses wait for the client's delayed ACK (about 40 ms on loopback);
+// LibraryApp --serve turns it on in main, as it owns the process.
+class LibraryServer {
+    private final Library library;
+    // Mutations go through the store when there is one, so that they are logged
+    private final LibraryStore store;
+    // Adds and deletes from concurrent requests are applied, and logged, in shared batches
+    private final AsyncLibraryWriter writer;
+    private final HttpServer server;
+    private final ExecutorService executor = newRequestExecutor();
+
+    LibraryServer(Library library, LibraryStore store, int port) throws IOException {
+        this.library = library;
+        this.store = store;
+        writer = new AsyncLibraryWriter(library, store);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/books", exchange -> handle(exchange, this::books));
+        server.createContext("/books/author", exchange -> handle(exchange, this::author));
+        server.createContext("/books/years", exchange -> handle(exchange, this::years));
+        server.createContext("/books/status", exchange -> handle(exchange, this::status));
+        server.createContext("/books/checkout",
+                exchange -> handle(exchange, (method, params) -> copy(method, params, true)));
+        server.createContext("/books/checkin",
+                exchange -> handle(exchange, (method, params) -> copy(method, params, false)));
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    // The port actually bound, which differs from the requested one when that was 0
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdown();
+        writer.close();
+    }
+
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // A handler's answer: HTTP status and JSON body
+    private static class Response {
+        final int status;
+        final String json;
+
+        Response(int status, String json) {
+            this.status = status;
+            this.json = json;
+        }
+    }
+
+    // Thrown for a missing or malformed parameter and answered with 400
+    private static class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    private interface Handler {
+        Response handle(String method, Map<String, String> params) throws IOException, BadRequest;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        Response response;
+        try {
+            Map<String, String> params = parameters(exchange);
+            response = handler.handle(exchange.getRequestMethod(), params);
+        } catch (BadRequest e) {
+            response = error(400, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            // Every exchange gets an answer; one left unanswered holds the client until it times out
+            response = error(500, String.valueOf(e.getMessage()));
+        }
+        byte[] body = response.json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Response books(String method, Map<String, String> params) throws IOException, BadRequest {
+        switch (method) {
+            case "GET": {
+                Book book = library.searchBookByTitle(required(params, "title"));
+                return book != null ? new Response(200, json(book)) : error(404, "Book not found");
+            }
+            case "POST": {
+                Status status = status(required(params, "status"));
+                Book book = new Book(required(params, "author"), required(params, "title"),
+                        integer(params, "year"), status);
+                write(book, null);
+                return new Response(201, json(book));
+            }
+            case "DELETE": {
+                boolean deleted = write(null, required(params, "title"));
+                return deleted ? new Response(200, "{\"deleted\":true}") : error(404, "Book not found");
+            }
+            default:
+                return error(405, "Use GET, POST or DELETE");
+        }
+    }
+
+    private Response author(String method, Map<String, String> params) throws BadRequest {
+        if (!method.equals("GET")) return error(405, "Use GET");
+        return new Response(200, json(library.getBooksByAuthor(required(params, "name"))));
+    }
+
+    private Response years(String method, Map<String, String> params) throws BadRequest {
+        if (!method.equals("GET")) return error(405, "Use GET");
+        return new Response(200, json(library.getBooksByYearRange(integer(params, "from"), integer(params, "to"))));
+    }
+
+    private Response status(String method, Map<String, String> params) throws IOException, BadRequest {
+        if (!method.equals("POST")) return error(405, "Use POST");
+        String title = required(params, "title");
+        Status status = status(required(params, "status"));
+        // The update's own result: looking the title up again could race with a delete
+        Book updated = store != null ? store.updateBookStatus(title, status) : library.updateBookStatus(title, status);
+        if (updated == null) return error(404, "Book not found");
+        return new Response(200, json(updated));
+    }
+
+    // Hands an add (book) or a delete (title) to the writer and waits until it is applied,
+    // and durable when there is a store; returns whether a delete found its book
+    private boolean write(Book book, String title) throws IOException {
+        try {
+            CompletableFuture<Boolean> result = book != null ? writer.addBook(book) : writer.deleteBook(title);
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    // Lends out or returns one copy; 409 when the title exists but no copy is in the right state
+    private Response copy(String method, Map<String, String> params, boolean checkout) throws IOException, BadRequest {
+        if (!method.equals("POST")) return error(405, "Use POST");
+        String title = required(params, "title");
+        Book copy;
+        if (store != null) {
+            copy = checkout ? store.checkout(title) : store.checkin(title);
+        } else {
+            copy = checkout ? library.checkout(title) : library.checkin(title);
+        }
+        if (copy != null) return new Response(200, json(copy));
+        if (library.searchBookByTitle(title) == null) return error(404, "Book not found");
+        return error(409, checkout ? "No copy is available" : "No copy is borrowed");
+    }
+
+    // Query string parameters, then those of a form-encoded body
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException, BadRequest {
+        Map<String, String> params = new HashMap<>();
+        decodeInto(params, exchange.getRequestURI().getRawQuery());
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            if (body.length > 0) decodeInto(params, new String(body, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void decodeInto(Map<String, String> params, String encoded) throws BadRequest {
+        if (encoded == null || encoded.isEmpty()) return;
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) continue;
+            try {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // A '%' not followed by two hex digits, e.g. title=%zz
+                throw new BadRequest("Malformed percent-encoding in '" + pair + "'");
+            }
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) throws BadRequest {
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty()) throw new BadRequest("Missing parameter '" + name + "'");
+        return value.trim();
+    }
+
+    private static int integer(Map<String, String> params, String name) throws BadRequest {
+        try {
+            return Integer.parseInt(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequest("Parameter '" + name + "' must be an integer");
+        }
+    }
+
+    private static Status status(String value) throws BadRequest {
+        Status status = Status.parse(value);
+        if (status == null) throw new BadRequest("Status must be one of BANNED, BORROWED, EXIT");
+        return status;
+    }
+
+    private static Response error(int status, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return new Response(status, json.append('}').toString());
+    }
+
+    static String json(Book book) {
+        StringBuilder json = new StringBuilder(128);
+        appendBook(json, book);
+        return json.toString();
+    }
+
+    static String json(List<Book> books) {
+        StringBuilder json = new StringBuilder(2 + books.size() * 96).append('[');
+        for (int i = 0; i < books.size(); i++) {
+            if (i > 0) json.append(',');
+            appendBook(json, books.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    private static void appendBook(StringBuilder json, Book book) {
+        json.append("{\"author\":");
+        appendString(json, book.getAuthor());
+        json.append(",\"title\":");
+        appendString(json, book.getTitle());
+        json.append(",\"year\":").append(book.getYearOfPublish())
+                .append(",\"status\":\"").append(book.getStatus().name()).append("\"}");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,176 @@
+package library;
+
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Versioned binary image of a Library. Layout, all integers big-endian:
+//   magic "LIBS", version, book count, author count,
+//   authors as length-prefixed UTF-8,
+//   per book: author id, length-prefixed UTF-8 title, year, status code byte,
+//   CRC32 of everything before it as a long
+class LibrarySnapshot {
+    static final int MAGIC = 0x4C494253;
+    static final int VERSION = 1;
+    // Smallest encodings: an empty name, and an author id, empty title, year and status
+    private static final int MIN_AUTHOR_BYTES = 4;
+    private static final int MIN_BOOK_BYTES = 13;
+
+    // A decoded snapshot: the books in list order, plus the author dictionary with case
+    // variants merged into one key, so that a restore can look each author up once and
+    // size its bucket up front rather than index the author of every book
+    static class Contents {
+        final List<Book> books;
+        final FoldedKey[] authors;
+        // Books per author, and the author of each book, by index into authors
+        final int[] bookCounts;
+        final int[] authorOf;
+
+        private Contents(List<Book> books, FoldedKey[] authors, int[] bookCounts, int[] authorOf) {
+            this.books = books;
+            this.authors = authors;
+            this.bookCounts = bookCounts;
+            this.authorOf = authorOf;
+        }
+    }
+
+    static void write(Library library, Path path) throws IOException {
+        Map<String, Integer> authorIds = new HashMap<>();
+        List<String> authors = new ArrayList<>();
+        library.forEachBook(book -> {
+            if (authorIds.putIfAbsent(book.getAuthor(), authors.size()) == null) {
+                authors.add(book.getAuthor());
+            }
+        });
+
+        try (OutputStream file = Files.newOutputStream(path)) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(library.size());
+            out.writeInt(authors.size());
+            for (String author : authors) {
+                writeString(out, author);
+            }
+            try {
+                library.forEachBook(book -> {
+                    try {
+                        out.writeInt(authorIds.get(book.getAuthor()));
+                        writeString(out, book.getTitle());
+                        out.writeInt(book.getYearOfPublish());
+                        out.writeByte(book.getStatus().getCode());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            // The checksum itself goes around the checked stream
+            new DataOutputStream(file).writeLong(checked.getChecksum().getValue());
+        }
+    }
+
+    static Contents read(Path path) throws IOException {
+        byte[] image = Files.readAllBytes(path);
+        if (image.length < 24) {
+            throw new IOException("Not a library snapshot: " + path);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(image, 0, image.length - 8);
+
+        CRC32 crc = new CRC32();
+        crc.update(image, 0, image.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(image).getLong(image.length - 8)) {
+            throw new IOException("Snapshot checksum mismatch: " + path);
+        }
+
+        try {
+            if (bytes.getInt() != MAGIC) {
+                throw new IOException("Not a library snapshot: " + path);
+            }
+            int version = bytes.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            // Counts are checked against the bytes left before anything is sized by them, so a
+            // bad one fails as corruption rather than as a huge or negative allocation
+            int bookCount = bytes.getInt();
+            int authorCount = bytes.getInt();
+            if (authorCount < 0 || authorCount > bytes.remaining() / MIN_AUTHOR_BYTES) {
+                throw new IOException("Corrupt snapshot, bad author count: " + path);
+            }
+            String[] authors = new String[authorCount];
+            // Dictionary entry to merged author; the dictionary is case-sensitive, the
+            // Library's author index is not
+            int[] merged = new int[authors.length];
+            Map<FoldedKey, Integer> mergedIds = new HashMap<>(authors.length * 4 / 3 + 1);
+            List<FoldedKey> authorKeys = new ArrayList<>(authors.length);
+            for (int i = 0; i < authors.length; i++) {
+                authors[i] = readString(bytes);
+                FoldedKey key = new FoldedKey(authors[i]);
+                Integer id = mergedIds.putIfAbsent(key, authorKeys.size());
+                if (id == null) {
+                    merged[i] = authorKeys.size();
+                    authorKeys.add(key);
+                } else {
+                    merged[i] = id;
+                }
+            }
+
+            if (bookCount < 0 || bookCount > bytes.remaining() / MIN_BOOK_BYTES) {
+                throw new IOException("Corrupt snapshot, bad book count: " + path);
+            }
+            List<Book> books = new ArrayList<>(bookCount);
+            int[] bookCounts = new int[authorKeys.size()];
+            int[] authorOf = new int[bookCount];
+            for (int i = 0; i < bookCount; i++) {
+                int authorId = bytes.getInt();
+                int author = merged[authorId];
+                String title = readString(bytes);
+                int year = bytes.getInt();
+                Status status = Status.fromCode(bytes.get());
+                if (status == null) {
+                    throw new IOException("Corrupt snapshot, bad status code: " + path);
+                }
+                books.add(new Book(authors[authorId], title, year, status, authorKeys.get(author)));
+                authorOf[i] = author;
+                bookCounts[author]++;
+            }
+            if (bytes.hasRemaining()) {
+                throw new IOException("Corrupt snapshot, trailing data: " + path);
+            }
+            return new Contents(books, authorKeys.toArray(new FoldedKey[0]), bookCounts, authorOf);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: " + path, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    // Decodes straight out of the backing array and skips past the string
+    private static String readString(ByteBuffer bytes) {
+        int length = bytes.getInt();
+        if (length < 0 || length > bytes.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(bytes.array(), bytes.position(), length, StandardCharsets.UTF_8);
+        bytes.position(bytes.position() + length);
+        return value;
+    }
+}
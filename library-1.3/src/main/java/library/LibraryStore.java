@@ -0,0 +1,408 @@
+package library;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Keeps a Library durable in a directory as a base snapshot plus a mutation log.
+// Mutations must go through addBook/deleteBook/updateStatus here to be logged, and so
+// must sortBooksByYear: which book a later delete or status change hits depends on the order.
+// Generation g consists of base-g.snap (absent for generation 0) and mutations-g.log, plus
+// sync-g.lines once a CatalogSync has run against it;
+// compaction writes base-(g+1).snap and starts an empty log for it, so a crash at any
+// point leaves one complete generation to recover from.
+//
+// A mutation reaches the library only once its record is on disk, so readers never see a
+// change that a failed fsync could lose: when a mutator throws, the library is as it was and
+// a restart recovers the same state. Records are logged in one order under applyLock, synced
+// in shared batches and then applied in that same order, each waiting for those before it.
+class LibraryStore implements Closeable {
+    static final long COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final Library library;
+    // Log writers share the read side so their fsyncs can be grouped; switching generations takes the write side
+    private final ReadWriteLock logLock = new ReentrantReadWriteLock();
+    private final Object applyLock = new Object();
+    // Sequence number of the last record logged, under applyLock, and of the last one applied
+    // to the library, under applyOrder; both start over with each generation's log
+    private long logged;
+    private final Object applyOrder = new Object();
+    private long applied;
+    private final LogFactory logs;
+    private long generation;
+    private volatile MutationLog log;
+
+    // Opens a generation's log for appending; tests substitute logs whose writes fail
+    interface LogFactory {
+        MutationLog open(Path path) throws IOException;
+    }
+
+    private LibraryStore(Path directory, Library library, LogFactory logs) {
+        this.directory = directory;
+        this.library = library;
+        this.logs = logs;
+    }
+
+    // Loads the newest generation into the library and opens its log for appending
+    static LibraryStore open(String directoryPath, Library library) throws IOException {
+        return open(directoryPath, library, MutationLog::new);
+    }
+
+    static LibraryStore open(String directoryPath, Library library, LogFactory logs) throws IOException {
+        Path directory = Paths.get(directoryPath);
+        Files.createDirectories(directory);
+        LibraryStore store = new LibraryStore(directory, library, logs);
+
+        long newest = 0;
+        for (Path file : store.generationFiles()) {
+            if (file.getFileName().toString().startsWith("base-")) {
+                newest = Math.max(newest, generationOf(file));
+            }
+        }
+        store.generation = newest;
+        if (newest > 0) {
+            library.loadSnapshot(store.basePath(newest).toString());
+        }
+        MutationLog.replay(store.logPath(newest), library);
+        store.log = logs.open(store.logPath(newest));
+        store.deleteOlderGenerations();
+        return store;
+    }
+
+    // Logs an add, waits until it is durable and then applies it
+    void addBook(Book book) throws IOException {
+        logLock.readLock().lock();
+        try {
+            long sequence;
+            synchronized (applyLock) {
+                sequence = logged = log.appendAdd(book);
+            }
+            applyWhenDurable(sequence, sequence, () -> {
+                library.addBook(book);
+                return null;
+            });
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    // Logs a run of adds, waits for a single fsync and applies them with one addAll
+    void addAll(List<Book> books) throws IOException {
+        if (books.isEmpty()) return;
+        logLock.readLock().lock();
+        try {
+            long first;
+            long last;
+            synchronized (applyLock) {
+                first = logged + 1;
+                for (Book book : books) {
+                    logged = log.appendAdd(book);
+                }
+                last = logged;
+            }
+            applyWhenDurable(first, last, () -> {
+                library.addAll(books);
+                return null;
+            });
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    boolean deleteBook(String title) throws IOException {
+        boolean deleted;
+        logLock.readLock().lock();
+        try {
+            long sequence;
+            synchronized (applyLock) {
+                sequence = logged = log.appendDelete(title);
+            }
+            deleted = applyWhenDurable(sequence, sequence, () -> library.deleteBook(title));
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return deleted;
+    }
+
+    boolean updateStatus(String title, Status status) throws IOException {
+        return updateBookStatus(title, status) != null;
+    }
+
+    // The book as updated, or null if no book has the title
+    Book updateBookStatus(String title, Status status) throws IOException {
+        Book updated;
+        logLock.readLock().lock();
+        try {
+            long sequence;
+            synchronized (applyLock) {
+                sequence = logged = log.appendStatus(title, status);
+            }
+            updated = applyWhenDurable(sequence, sequence, () -> library.updateBookStatus(title, status));
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return updated;
+    }
+
+    Book checkout(String title) throws IOException {
+        return moveCopy(title, true);
+    }
+
+    Book checkin(String title) throws IOException {
+        return moveCopy(title, false);
+    }
+
+    // Logs the status change of the exact copy that a checkout or checkin moves, so it must
+    // pick the copy from a library that has applied every record logged before; it waits for
+    // those, holding back later mutators meanwhile. Nothing is logged when no copy is available.
+    private Book moveCopy(String title, boolean checkout) throws IOException {
+        Book copy;
+        logLock.readLock().lock();
+        try {
+            Status from = checkout ? Status.EXIT : Status.BORROWED;
+            Status to = checkout ? Status.BORROWED : Status.EXIT;
+            long sequence;
+            int rank;
+            synchronized (applyLock) {
+                // Throws if an earlier record failed, as it will never be applied
+                log.sync(logged);
+                awaitApplied(logged);
+                Book current = library.nextCopy(title, from);
+                if (current == null) return null;
+                rank = library.copyRank(current, from);
+                sequence = logged = log.appendCopyStatus(current.withStatus(to), from, rank);
+                copy = current;
+            }
+            Book moved = copy;
+            copy = applyWhenDurable(sequence, sequence, () -> library.updateCopyStatus(
+                    moved.getTitle(), moved.getAuthor(), moved.getYearOfPublish(), from, rank, to));
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return copy;
+    }
+
+    // Logs a run of adds and deletes, waits for a single fsync and applies it with one
+    // Library.applyBatch; replay gets the same outcome by applying the records one by one
+    void applyBatch(List<? extends Mutation> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        logLock.readLock().lock();
+        try {
+            long first;
+            long last;
+            synchronized (applyLock) {
+                first = logged + 1;
+                for (Mutation mutation : batch) {
+                    logged = mutation.book != null ? log.appendAdd(mutation.book) : log.appendDelete(mutation.title);
+                }
+                last = logged;
+            }
+            applyWhenDurable(first, last, () -> {
+                library.applyBatch(batch);
+                return null;
+            });
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    // Logs the whole batch, waits for a single fsync and applies it in one step
+    int updateStatuses(Map<String, Status> updates) throws IOException {
+        if (updates.isEmpty()) return 0;
+        int updated;
+        logLock.readLock().lock();
+        try {
+            long first;
+            long last;
+            synchronized (applyLock) {
+                first = logged + 1;
+                for (Map.Entry<String, Status> update : updates.entrySet()) {
+                    logged = log.appendStatus(update.getKey(), update.getValue());
+                }
+                last = logged;
+            }
+            updated = applyWhenDurable(first, last, () -> library.updateStatuses(updates));
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return updated;
+    }
+
+    void sortBooksByYear() throws IOException {
+        logLock.readLock().lock();
+        try {
+            long sequence;
+            synchronized (applyLock) {
+                sequence = logged = log.appendSort();
+            }
+            applyWhenDurable(sequence, sequence, () -> {
+                library.sortBooksByYear();
+                return null;
+            });
+        } finally {
+            logLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    // Waits until records first to last are on disk and every earlier record has been applied,
+    // then applies these with the given step. If the sync fails nothing is applied, and no later
+    // record can become durable either, so no one is left waiting for these to be applied.
+    private <T> T applyWhenDurable(long first, long last, Supplier<T> step) throws IOException {
+        log.sync(last);
+        synchronized (applyOrder) {
+            awaitApplied(first - 1);
+            try {
+                return step.get();
+            } finally {
+                applied = last;
+                applyOrder.notifyAll();
+            }
+        }
+    }
+
+    // Only records already known to be durable are waited for, so the wait always ends
+    private void awaitApplied(long sequence) {
+        boolean interrupted = false;
+        synchronized (applyOrder) {
+            while (applied < sequence) {
+                try {
+                    applyOrder.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Saves the lines a CatalogSync remembers next to the current generation, unless the
+    // library has moved past the given version; returns whether they were saved. They are
+    // marked with the log's length while no mutation is in flight, so finding the same
+    // length later, in this process or after a restart, means the library has not changed.
+    boolean saveSyncState(LineFingerprints lines, long libraryVersion) throws IOException {
+        logLock.writeLock().lock();
+        try {
+            if (library.version() != libraryVersion) return false;
+            lines.write(syncStatePath(), log.size());
+            return true;
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    // Reads back the lines saved by saveSyncState if the library is as it was then
+    boolean readSyncState(LineFingerprints lines) throws IOException {
+        logLock.writeLock().lock();
+        try {
+            return lines.read(syncStatePath(), log.size());
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    // Writes the whole library as the base of a new generation with an empty log
+    void checkpoint() throws IOException {
+        logLock.writeLock().lock();
+        try {
+            writeNextGeneration();
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    private void writeNextGeneration() throws IOException {
+        long next = generation + 1;
+        Path temp = directory.resolve("base-" + next + ".snap.tmp");
+        library.saveSnapshot(temp.toString());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, basePath(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        log.close();
+        generation = next;
+        // Mutators hold the read side of logLock until they have applied, so none is in flight
+        logged = 0;
+        synchronized (applyOrder) {
+            applied = 0;
+        }
+        log = logs.open(logPath(next));
+        deleteOlderGenerations();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (log.size() <= COMPACTION_THRESHOLD) return;
+        logLock.writeLock().lock();
+        try {
+            if (log.size() > COMPACTION_THRESHOLD) {
+                writeNextGeneration();
+            }
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    private void deleteOlderGenerations() throws IOException {
+        for (Path file : generationFiles()) {
+            if (generationOf(file) < generation) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private List<Path> generationFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "{base-*.snap,mutations-*.log,sync-*.lines}")) {
+            for (Path file : entries) {
+                if (generationOf(file) >= 0) files.add(file);
+            }
+        }
+        return files;
+    }
+
+    // The number between the first '-' and the extension, or -1 for a foreign file name
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private Path basePath(long generation) {
+        return directory.resolve("base-" + generation + ".snap");
+    }
+
+    private Path logPath(long generation) {
+        return directory.resolve("mutations-" + generation + ".log");
+    }
+
+    private Path syncStatePath() {
+        return directory.resolve("sync-" + generation + ".lines");
+    }
+}
@@ -0,0 +1,300 @@
+package library;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Table from the hash of a books file line to the folded title on that line, split into the
+// lines seen in the current sync round and the rest. Entries sit in dense arrays, ids below
+// seen for the lines seen this round and the rest after them, and an open-addressing table
+// finds an entry's id by hash. Marking a line seen swaps it to the boundary, so starting a
+// round costs nothing and listing the lines not seen costs only as much as there are of them.
+//
+// Saved as magic "LSYN" and version, then frames, all integers big-endian:
+//   mark, change count, per change a line hash and either its length-prefixed UTF-8 title
+//   or -1 for a removal, CRC32 of the frame before it as a long
+// The first frame puts every line; each later write appends one with the changes since, so
+// a sync writes as much as it changed until the appended frames outgrow the first one and
+// the file is written whole again. The mark is the caller's, telling what state of the
+// library the lines describe, and only the last frame's counts.
+class LineFingerprints {
+    static final int MAGIC = 0x4C53594E;
+    static final int VERSION = 1;
+    // A hash and an empty title
+    private static final int MIN_CHANGE_BYTES = 12;
+
+    // By id: line hash (never 0), title, and the table slot holding the id
+    private long[] hashes = new long[512];
+    private String[] titles = new String[512];
+    private int[] slotOf = new int[512];
+    private int size;
+    private int seen;
+    // Id + 1 by slot; 0 marks a free slot
+    private int[] table = new int[1024];
+    // Changes since the last write, in order: line hash and title, or null for a removal;
+    // only kept while there is a file to append them to
+    private final LongList changedHashes = new LongList();
+    private final List<String> changedTitles = new ArrayList<>();
+    // The file the changes can be appended to, null until written or read; how long its first
+    // frame is, and how much has been appended to it
+    private Path writtenPath;
+    private long firstFrameBytes;
+    private long appendedBytes;
+
+    int size() {
+        return size;
+    }
+
+    // Id of the line, or -1 if it is not known. Ids change as lines are marked seen or
+    // removed, so they are only good until the next change.
+    int find(long hash) {
+        int mask = table.length - 1;
+        for (int slot = home(hash, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[table[slot] - 1] == hash) return table[slot] - 1;
+        }
+        return -1;
+    }
+
+    String title(int id) {
+        return titles[id];
+    }
+
+    long hash(int id) {
+        return hashes[id];
+    }
+
+    // Makes every line unseen
+    void startRound() {
+        seen = 0;
+    }
+
+    boolean isSeen(int id) {
+        return id < seen;
+    }
+
+    void markSeen(int id) {
+        if (id >= seen) swap(id, seen++);
+    }
+
+    // Adds the line, or gives a known one the title, and marks it seen
+    void put(long hash, String title) {
+        int id = find(hash);
+        if (id < 0) {
+            if (2 * (size + 1) > table.length) resize(table.length * 2);
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                titles = Arrays.copyOf(titles, size * 2);
+                slotOf = Arrays.copyOf(slotOf, size * 2);
+            }
+            id = size++;
+            hashes[id] = hash;
+            int mask = table.length - 1;
+            int slot = home(hash, mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+            slotOf[id] = slot;
+        }
+        titles[id] = title;
+        markSeen(id);
+        if (writtenPath != null) {
+            changedHashes.add(hash);
+            changedTitles.add(title);
+        }
+    }
+
+    // Drops the line: its id goes to the end of the arrays and its table slot is freed,
+    // moving later entries of its probe run back into the gap
+    void remove(long hash) {
+        int id = find(hash);
+        if (id < 0) return;
+        if (writtenPath != null) {
+            changedHashes.add(hash);
+            changedTitles.add(null);
+        }
+        if (id < seen) {
+            swap(id, --seen);
+            id = seen;
+        }
+        swap(id, --size);
+        titles[size] = null;
+
+        int mask = table.length - 1;
+        int gap = slotOf[size];
+        for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = home(hashes[table[i] - 1], mask);
+            boolean homeAfterGap = gap <= i ? gap < home && home <= i : gap < home || home <= i;
+            if (!homeAfterGap) {
+                table[gap] = table[i];
+                slotOf[table[gap] - 1] = gap;
+                gap = i;
+            }
+        }
+        table[gap] = 0;
+    }
+
+    // Hashes of the lines not seen this round
+    LongList unseen() {
+        LongList unseen = new LongList();
+        for (int id = seen; id < size; id++) {
+            unseen.add(hashes[id]);
+        }
+        return unseen;
+    }
+
+    void clear() {
+        hashes = new long[512];
+        titles = new String[512];
+        slotOf = new int[512];
+        table = new int[1024];
+        size = 0;
+        seen = 0;
+        changedHashes.size = 0;
+        changedTitles.clear();
+        writtenPath = null;
+    }
+
+    // Appends the changes since the last write to path, or writes the file whole through a
+    // temporary one, so a reader finds the old lines or the new ones. No fsync: lines lost in
+    // a crash only cost the next sync a full comparison.
+    void write(Path path, long mark) throws IOException {
+        if (path.equals(writtenPath) && appendedBytes <= firstFrameBytes) {
+            try (OutputStream file = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                appendedBytes += writeFrame(file, mark, changedHashes.size, i -> changedHashes.values[i],
+                        changedTitles::get);
+            }
+        } else {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                DataOutputStream header = new DataOutputStream(file);
+                header.writeInt(MAGIC);
+                header.writeInt(VERSION);
+                firstFrameBytes = writeFrame(file, mark, size, id -> hashes[id], id -> titles[id]);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            writtenPath = path;
+            appendedBytes = 0;
+        }
+        changedHashes.size = 0;
+        changedTitles.clear();
+    }
+
+    // Writes one frame of count changes; returns its length
+    private static long writeFrame(OutputStream file, long mark, int count, IntToLongFunction hash,
+            IntFunction<String> title) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+        out.writeLong(mark);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(hash.applyAsLong(i));
+            String value = title.apply(i);
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        }
+        out.flush();
+        // The checksum itself goes around the checked stream
+        new DataOutputStream(file).writeLong(checked.getChecksum().getValue());
+        return out.size() + 8L;
+    }
+
+    // Replaces the lines with those saved at path, all unseen, if every frame there is whole
+    // and the last carries the mark; returns false otherwise, when the lines are not to be
+    // trusted
+    boolean read(Path path, long mark) throws IOException {
+        if (!Files.exists(path)) return false;
+        byte[] image = Files.readAllBytes(path);
+        ByteBuffer bytes = ByteBuffer.wrap(image);
+        if (image.length < 8 || bytes.getInt() != MAGIC || bytes.getInt() != VERSION) return false;
+        clear();
+        long lastMark = -1;
+        long first = 0;
+        try {
+            while (bytes.hasRemaining()) {
+                int start = bytes.position();
+                lastMark = bytes.getLong();
+                int count = bytes.getInt();
+                if (count < 0 || count > bytes.remaining() / MIN_CHANGE_BYTES) throw new BufferUnderflowException();
+                for (int i = 0; i < count; i++) {
+                    long hash = bytes.getLong();
+                    int length = bytes.getInt();
+                    if (length == -1) {
+                        remove(hash);
+                        continue;
+                    }
+                    if (length < 0 || length > bytes.remaining()) throw new BufferUnderflowException();
+                    put(hash, new String(image, bytes.position(), length, StandardCharsets.UTF_8));
+                    bytes.position(bytes.position() + length);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(image, start, bytes.position() - start);
+                if (crc.getValue() != bytes.getLong()) throw new BufferUnderflowException();
+                if (first == 0) first = bytes.position() - start;
+            }
+        } catch (BufferUnderflowException e) {
+            // A torn or damaged frame, which a crash while appending can leave
+            clear();
+            return false;
+        }
+        if (lastMark != mark) {
+            clear();
+            return false;
+        }
+        writtenPath = path;
+        firstFrameBytes = first;
+        appendedBytes = image.length - 8 - first;
+        startRound();
+        return true;
+    }
+
+    private void swap(int a, int b) {
+        if (a == b) return;
+        long hash = hashes[a];
+        hashes[a] = hashes[b];
+        hashes[b] = hash;
+        String title = titles[a];
+        titles[a] = titles[b];
+        titles[b] = title;
+        int slot = slotOf[a];
+        slotOf[a] = slotOf[b];
+        slotOf[b] = slot;
+        table[slotOf[a]] = a + 1;
+        table[slotOf[b]] = b + 1;
+    }
+
+    private void resize(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = home(hashes[id], mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+            slotOf[id] = slot;
+        }
+    }
+
+    private static int home(long hash, int mask) {
+        return Long.hashCode(hash * 0x9E3779B97F4A7C15L) & mask;
+    }
+}
@@ -0,0 +1,16 @@
+package library;
+
+// Generic LinkedList Node
+class LinkedListNode<T> {
+    T data;
+    LinkedListNode<T> next;
+    // Position among the nodes of a Library in list order, with gaps left by deletions
+    int ordinal;
+    // Place in the stack of its status in TitleCopies, when its title has several copies
+    int copySlot;
+
+    LinkedListNode(T data) {
+        this.data = data;
+        this.next = null;
+    }
+}
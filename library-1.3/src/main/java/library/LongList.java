@@ -0,0 +1,16 @@
+package library;
+
+import java.util.*;
+
+// Growable long array, the counterpart of IntList
+class LongList {
+    long[] values = new long[4];
+    int size;
+
+    void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+}
@@ -0,0 +1,14 @@
+package library;
+
+// One add or delete in a Library.applyBatch run; a delete names a title and has no book.
+// Once applied, applied says whether a delete found a book; an add is always applied.
+class Mutation {
+    final Book book;
+    final String title;
+    boolean applied;
+
+    Mutation(Book book, String title) {
+        this.book = book;
+        this.title = title;
+    }
+}
@@ -0,0 +1,220 @@
+package library;
+
+import java.util.*;
+import java.util.zip.CRC32;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Append-only log of Library mutations. Each record is framed as
+//   length, op byte, payload, CRC32 of op and payload
+// and a record only counts once it is complete and its checksum matches.
+// Appends are buffered, and whichever caller syncs first writes and fsyncs
+// everything appended so far, so concurrent writers share one fsync.
+// A failed write or fsync leaves the log unusable: the batch may be partly on disk,
+// and after a failed fsync the kernel may have dropped the dirty pages, so a retry
+// could report lost records as durable. Every later append and sync throws instead;
+// LibraryStore applies nothing that has not been synced, so LibraryStore.checkpoint
+// recovers by starting a new generation from the library.
+class MutationLog implements Closeable {
+    static final byte ADD = 1;
+    static final byte DELETE = 2;
+    static final byte STATUS = 3;
+    // A status change of one exact copy of a title, from a checkout or checkin; the copy is
+    // named by title, author, year, old status and rank as in Library.copyRank
+    static final byte COPY_STATUS = 4;
+    // A sortBooksByYear; deletes and status changes after it act on the first book in sorted order
+    static final byte SORT = 5;
+
+    private final FileChannel channel;
+    private final Object syncLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended;
+    private volatile long durable;
+    private volatile IOException failure;
+
+    MutationLog(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+    }
+
+    MutationLog(FileChannel channel) throws IOException {
+        this.channel = channel;
+        channel.position(channel.size());
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    // Buffers an add record and returns its sequence number for sync
+    long appendAdd(Book book) throws IOException {
+        ByteBuffer payload = encode(ADD, 5, book.getAuthor(), book.getTitle());
+        payload.putInt(book.getYearOfPublish());
+        payload.put((byte) book.getStatus().getCode());
+        return append(payload);
+    }
+
+    long appendDelete(String title) throws IOException {
+        return append(encode(DELETE, 0, title));
+    }
+
+    long appendStatus(String title, Status status) throws IOException {
+        return append(encode(STATUS, 1, title).put((byte) status.getCode()));
+    }
+
+    // The copy as it is now, after moving from the old status
+    long appendCopyStatus(Book copy, Status from, int rank) throws IOException {
+        ByteBuffer payload = encode(COPY_STATUS, 10, copy.getTitle(), copy.getAuthor());
+        payload.putInt(copy.getYearOfPublish()).put((byte) from.getCode()).putInt(rank);
+        return append(payload.put((byte) copy.getStatus().getCode()));
+    }
+
+    long appendSort() throws IOException {
+        return append(encode(SORT, 0));
+    }
+
+    // Blocks until the record with the given sequence number is on disk
+    void sync(long sequence) throws IOException {
+        if (durable >= sequence) return;
+        synchronized (syncLock) {
+            if (durable >= sequence) return; // Covered by the fsync we waited behind
+            checkUsable();
+
+            ByteArrayOutputStream batch;
+            long upTo;
+            synchronized (this) {
+                batch = pending;
+                upTo = appended;
+                pending = new ByteArrayOutputStream();
+            }
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                throw failure;
+            }
+            durable = upTo;
+        }
+    }
+
+    // A failed log has already reported the loss to the callers that were waiting on it
+    @Override
+    public void close() throws IOException {
+        long last;
+        synchronized (this) {
+            last = appended;
+        }
+        try {
+            if (failure == null) sync(last);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) throw new IOException("Mutation log failed earlier", failure);
+    }
+
+    private synchronized long append(ByteBuffer payload) throws IOException {
+        checkUsable();
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(payload.remaining() + 8);
+        record.putInt(payload.remaining()).put(payload).putInt((int) crc.getValue());
+        pending.write(record.array(), 0, record.capacity());
+        return ++appended;
+    }
+
+    // Leaves room for the given number of bytes of fixed-size fields after the strings
+    private static ByteBuffer encode(byte op, int fieldBytes, String... strings) {
+        byte[][] utf8 = new byte[strings.length][];
+        int length = 1 + fieldBytes;
+        for (int i = 0; i < strings.length; i++) {
+            utf8[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            length += 4 + utf8[i].length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length).put(op);
+        for (byte[] bytes : utf8) {
+            payload.putInt(bytes.length).put(bytes);
+        }
+        return payload;
+    }
+
+    // Applies every complete record to the library and cuts off a torn or corrupt
+    // tail left by a crash; returns the number of records applied
+    static int replay(Path path, Library library) throws IOException {
+        if (!Files.exists(path)) return 0;
+        byte[] image = Files.readAllBytes(path);
+        ByteBuffer bytes = ByteBuffer.wrap(image);
+        List<Book> adds = new ArrayList<>();
+        int applied = 0;
+        int validEnd = 0;
+
+        while (bytes.remaining() >= 4) {
+            int start = bytes.position();
+            int length = bytes.getInt();
+            if (length < 1 || length > bytes.remaining() - 4) break;
+
+            CRC32 crc = new CRC32();
+            crc.update(image, start + 4, length);
+            if ((int) crc.getValue() != bytes.getInt(start + 4 + length)) break;
+
+            ByteBuffer payload = ByteBuffer.wrap(image, start + 4, length).slice();
+            byte op = payload.get();
+            if (op == ADD) {
+                String author = readString(payload);
+                String title = readString(payload);
+                adds.add(new Book(author, title, payload.getInt(), Status.fromCode(payload.get())));
+            } else {
+                // Runs of adds go in together; other records must see every add before them
+                library.addAll(adds);
+                adds.clear();
+                if (op == DELETE) {
+                    library.deleteBook(readString(payload));
+                } else if (op == SORT) {
+                    library.sortBooksByYear();
+                } else if (op == COPY_STATUS) {
+                    String title = readString(payload);
+                    String author = readString(payload);
+                    int year = payload.getInt();
+                    Status from = Status.fromCode(payload.get());
+                    int rank = payload.getInt();
+                    library.updateCopyStatus(title, author, year, from, rank, Status.fromCode(payload.get()));
+                } else {
+                    String title = readString(payload);
+                    library.updateStatus(title, Status.fromCode(payload.get()));
+                }
+            }
+            validEnd = start + 8 + length;
+            bytes.position(validEnd);
+            applied++;
+        }
+        library.addAll(adds);
+
+        if (validEnd < image.length) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+                channel.force(false);
+            }
+        }
+        return applied;
+    }
+
+    private static String readString(ByteBuffer bytes) {
+        int length = bytes.getInt();
+        String value = new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length, StandardCharsets.UTF_8);
+        bytes.position(bytes.position() + length);
+        return value;
+    }
+}
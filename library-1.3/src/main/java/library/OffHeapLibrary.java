@@ -0,0 +1,598 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Catalog stored outside the Java heap in memory-mapped files, for catalogs whose objects
+// would keep the garbage collector busy: fixed-width book records, an append-only arena
+// of UTF-8 strings, and open-addressing title and author tables, each in its own file of
+// one directory. Nothing is parsed or rebuilt on open, so a catalog of any size reopens in
+// a few mmap calls, and the heap only holds the Books a method returns.
+//
+// Books of the same title, and of the same author ignoring case, are chained through their
+// records in the order they were added; the tables hold the first record of each chain.
+// Deleted records go on a free list and are reused first. Their strings stay in the arena,
+// which never shrinks.
+//
+// Changes reach the files through the page cache and are only durable once close has
+// forced them to disk. The header's clean flag is cleared on disk before the first change
+// and set again on close once everything else is forced, so a catalog reopened with the
+// flag clear was not closed and any page of it may be stale. Its tables and counts are then
+// rebuilt from the records whose fields and strings check out, chained in record order, and
+// the rest are freed: the catalog may have lost or undone recent changes, but every lookup
+// ends and finds only books of the title or author asked for.
+class OffHeapLibrary implements Closeable {
+    private static final int MAGIC = 0x4C424F48;
+    private static final int VERSION = 2;
+
+    // Header fields, at the start of the records file
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOTS = 8;
+    private static final int LIVE = 12;
+    private static final int FREE_HEAD = 16;
+    private static final int TITLE_CAPACITY = 20;
+    private static final int AUTHOR_CAPACITY = 24;
+    private static final int TITLE_KEYS = 28;
+    private static final int AUTHOR_KEYS = 32;
+    private static final int ARENA_END = 40;
+    private static final int CLEAN = 48;
+
+    // Record fields. Records are numbered from 1 so that 0 can mean "none" in links and
+    // tables; a status code of 0 marks a free record.
+    private static final int RECORD_BYTES = 48;
+    private static final int YEAR = 0;
+    private static final int TITLE_HASH = 4;
+    private static final int AUTHOR_HASH = 8;
+    private static final int NEXT_BY_TITLE = 12;
+    // Also the next record of the free list
+    private static final int NEXT_BY_AUTHOR = 16;
+    // The first record of an author chain points back to the last one
+    private static final int PREV_BY_AUTHOR = 20;
+    private static final int TITLE = 24;
+    private static final int AUTHOR = 32;
+    private static final int STATUS = 40;
+    private static final byte FREE = 0;
+
+    // The arena is mapped in chunks of 1 GiB, as one mapping cannot exceed 2 GiB; a string
+    // never straddles two chunks
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_BYTES = 1L << CHUNK_BITS;
+    private static final int INITIAL_TABLE_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final FileChannel recordFile;
+    private final FileChannel arenaFile;
+    private final FileChannel titleFile;
+    private final FileChannel authorFile;
+
+    private MappedByteBuffer records;
+    private final List<MappedByteBuffer> arena = new ArrayList<>();
+    // Tables of record numbers by spread hash, 0 marking a free slot
+    private MappedByteBuffer titles;
+    private MappedByteBuffer authors;
+
+    private OffHeapLibrary(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        recordFile = open(directory.resolve("records"));
+        arenaFile = open(directory.resolve("strings"));
+        titleFile = open(directory.resolve("titles"));
+        authorFile = open(directory.resolve("authors"));
+    }
+
+    // Opens the catalog in the directory, creating an empty one if there is none
+    static OffHeapLibrary open(String directoryPath) throws IOException {
+        OffHeapLibrary library = new OffHeapLibrary(Paths.get(directoryPath));
+        try {
+            library.mapFiles();
+        } catch (IOException | RuntimeException e) {
+            library.closeFiles();
+            throw e;
+        }
+        return library;
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void mapFiles() throws IOException {
+        if (recordFile.size() == 0) {
+            records = recordFile.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 1024L * RECORD_BYTES);
+            records.putInt(0, MAGIC);
+            records.putInt(4, VERSION);
+            records.putInt(TITLE_CAPACITY, INITIAL_TABLE_CAPACITY);
+            records.putInt(AUTHOR_CAPACITY, INITIAL_TABLE_CAPACITY);
+            setHeader(CLEAN, 1);
+        } else {
+            records = recordFile.map(FileChannel.MapMode.READ_WRITE, 0, recordFile.size());
+            if (records.capacity() < HEADER_BYTES || records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+                throw new IOException("Not an off-heap catalog, or of another version");
+            }
+        }
+        long arenaSize = arenaFile.size();
+        for (long start = 0; start < arenaSize; start += CHUNK_BYTES) {
+            arena.add(arenaFile.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_BYTES, arenaSize - start)));
+        }
+        if (header(CLEAN) != 1) {
+            recover(arenaSize);
+        } else {
+            titles = titleFile.map(FileChannel.MapMode.READ_WRITE, 0, 4L * header(TITLE_CAPACITY));
+            authors = authorFile.map(FileChannel.MapMode.READ_WRITE, 0, 4L * header(AUTHOR_CAPACITY));
+        }
+        setHeader(CLEAN, 0);
+        records.force(0, HEADER_BYTES);
+    }
+
+    // Rebuilds the tables, chains, free list and counts of a catalog that was not closed,
+    // trusting nothing but the records' year, status and string offsets
+    private void recover(long arenaSize) throws IOException {
+        long arenaEnd = Math.min(records.getLong(ARENA_END), arenaSize);
+        int slots = (int) Math.max(0, Math.min(header(SLOTS), (records.capacity() - HEADER_BYTES) / RECORD_BYTES));
+        // Empty tables large enough for every record, so that none grows on the way
+        int capacity = INITIAL_TABLE_CAPACITY;
+        while (capacity < 2 * slots) {
+            capacity *= 2;
+        }
+        titleFile.truncate(0);
+        authorFile.truncate(0);
+        titles = titleFile.map(FileChannel.MapMode.READ_WRITE, 0, 4L * capacity);
+        authors = authorFile.map(FileChannel.MapMode.READ_WRITE, 0, 4L * capacity);
+        setHeader(TITLE_CAPACITY, capacity);
+        setHeader(AUTHOR_CAPACITY, capacity);
+        setHeader(TITLE_KEYS, 0);
+        setHeader(AUTHOR_KEYS, 0);
+        setHeader(LIVE, 0);
+        setHeader(FREE_HEAD, 0);
+        setHeader(SLOTS, slots);
+        records.putLong(ARENA_END, arenaEnd);
+
+        for (int record = 1; record <= slots; record++) {
+            long title = records.getLong(field(record, TITLE));
+            long author = records.getLong(field(record, AUTHOR));
+            if (records.get(field(record, STATUS)) == FREE || Status.fromCode(records.get(field(record, STATUS))) == null
+                    || !isString(title, arenaEnd) || !isString(author, arenaEnd)) {
+                records.put(field(record, STATUS), FREE);
+                continue;
+            }
+            String titleKey = Library.foldCase(readString(title));
+            String authorKey = Library.foldCase(readString(author));
+            records.putInt(field(record, TITLE_HASH), titleKey.hashCode());
+            records.putInt(field(record, AUTHOR_HASH), authorKey.hashCode());
+            link(record, titleSlot(titleKey, titleKey.hashCode()), authorSlot(authorKey, authorKey.hashCode()));
+        }
+        // Freed last to first, so that the lowest records are reused first
+        for (int record = slots; record >= 1; record--) {
+            if (records.get(field(record, STATUS)) == FREE) {
+                setLink(record, NEXT_BY_AUTHOR, header(FREE_HEAD));
+                setHeader(FREE_HEAD, record);
+            }
+        }
+    }
+
+    // Whether a whole string starts at the offset and ends by the end of the arena
+    private boolean isString(long offset, long arenaEnd) {
+        if (offset < 0 || offset + 4 > arenaEnd) return false;
+        MappedByteBuffer buffer = arena.get((int) (offset >>> CHUNK_BITS));
+        int position = (int) (offset & (CHUNK_BYTES - 1));
+        if (position + 4 > buffer.capacity()) return false;
+        int length = buffer.getInt(position);
+        return length >= 0 && position + 4L + length <= buffer.capacity() && offset + 4 + length <= arenaEnd;
+    }
+
+    public void addBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            append(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            for (Book book : books) {
+                append(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return header(LIVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visits every book in record order; each Book is created for the visit only
+    void forEachBook(Consumer<? super Book> action) {
+        lock.readLock().lock();
+        try {
+            int slots = header(SLOTS);
+            for (int record = 1; record <= slots; record++) {
+                if (records.get(field(record, STATUS)) != FREE) action.accept(book(record));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void displayBooks() {
+        if (size() == 0) {
+            System.out.println("The library has no books.");
+            return;
+        }
+        forEachBook(System.out::println);
+    }
+
+    // The earliest added book with the title, ignoring case
+    public Book searchBookByTitle(String title) {
+        String key = Library.foldCase(title);
+        lock.readLock().lock();
+        try {
+            int record = titles.getInt(4 * titleSlot(key, key.hashCode()));
+            return record != 0 ? book(record) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Books by the author, ignoring case, in the order they were added
+    public List<Book> getBooksByAuthor(String author) {
+        String key = Library.foldCase(author);
+        List<Book> books = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int record = authors.getInt(4 * authorSlot(key, key.hashCode()));
+            // Books spelling the author alike share one string, decoded once
+            long nameOffset = -1;
+            String name = null;
+            for (; record != 0; record = link(record, NEXT_BY_AUTHOR)) {
+                long offset = records.getLong(field(record, AUTHOR));
+                if (offset != nameOffset) {
+                    nameOffset = offset;
+                    name = readString(offset);
+                }
+                books.add(book(record, name));
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Deletes the earliest added book with the title and puts its record on the free list
+    public boolean deleteBook(String title) {
+        String key = Library.foldCase(title);
+        lock.writeLock().lock();
+        try {
+            int slot = titleSlot(key, key.hashCode());
+            int record = titles.getInt(4 * slot);
+            if (record == 0) return false;
+
+            int nextSameTitle = link(record, NEXT_BY_TITLE);
+            if (nextSameTitle != 0) {
+                titles.putInt(4 * slot, nextSameTitle);
+            } else {
+                removeSlot(titles, header(TITLE_CAPACITY), slot, TITLE_HASH);
+                setHeader(TITLE_KEYS, header(TITLE_KEYS) - 1);
+            }
+            unlinkAuthor(record);
+
+            records.put(field(record, STATUS), FREE);
+            setLink(record, NEXT_BY_AUTHOR, header(FREE_HEAD));
+            setHeader(FREE_HEAD, record);
+            setHeader(LIVE, header(LIVE) - 1);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Changes the status of the earliest added book with the title in place
+    public boolean updateStatus(String title, Status status) {
+        String key = Library.foldCase(title);
+        lock.writeLock().lock();
+        try {
+            int record = titles.getInt(4 * titleSlot(key, key.hashCode()));
+            if (record == 0) return false;
+            records.put(field(record, STATUS), (byte) status.getCode());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forces every change to disk, then marks the catalog clean; unmaps nothing, as the JDK
+    // releases the mappings once they are unreachable
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer chunk : arena) {
+                chunk.force();
+            }
+            titles.force();
+            authors.force();
+            records.force();
+            setHeader(CLEAN, 1);
+            records.force(0, HEADER_BYTES);
+        } finally {
+            lock.writeLock().unlock();
+            closeFiles();
+        }
+    }
+
+    // Closes every channel even if one of them fails, and rethrows the first failure
+    private void closeFiles() throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : new FileChannel[]{authorFile, titleFile, arenaFile, recordFile}) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void append(Book book) {
+        String titleKey = Library.foldCase(book.getTitle());
+        String authorKey = Library.foldCase(book.getAuthor());
+        int record = allocate();
+        records.putInt(field(record, YEAR), book.getYearOfPublish());
+        records.put(field(record, STATUS), (byte) book.getStatus().getCode());
+        records.putInt(field(record, TITLE_HASH), titleKey.hashCode());
+        records.putInt(field(record, AUTHOR_HASH), authorKey.hashCode());
+        records.putLong(field(record, TITLE), writeString(book.getTitle()));
+
+        int authorSlot = authorSlot(authorKey, authorKey.hashCode());
+        int first = authors.getInt(4 * authorSlot);
+        // An author spelled exactly like the first book's shares its string
+        long firstAuthor = first != 0 ? records.getLong(field(first, AUTHOR)) : -1;
+        records.putLong(field(record, AUTHOR), first != 0 && readString(firstAuthor).equals(book.getAuthor())
+                ? firstAuthor : writeString(book.getAuthor()));
+        link(record, titleSlot(titleKey, titleKey.hashCode()), authorSlot);
+
+        if (2 * header(TITLE_KEYS) > header(TITLE_CAPACITY)) titles = grow(titleFile, titles, TITLE_CAPACITY, TITLE_HASH);
+        if (2 * header(AUTHOR_KEYS) > header(AUTHOR_CAPACITY)) authors = grow(authorFile, authors, AUTHOR_CAPACITY, AUTHOR_HASH);
+    }
+
+    // Puts a live record at the end of its title and author chains, given the table slots
+    // those start from or belong in
+    private void link(int record, int titleSlot, int authorSlot) {
+        setLink(record, NEXT_BY_TITLE, 0);
+        setLink(record, NEXT_BY_AUTHOR, 0);
+        int first = titles.getInt(4 * titleSlot);
+        if (first == 0) {
+            titles.putInt(4 * titleSlot, record);
+            setHeader(TITLE_KEYS, header(TITLE_KEYS) + 1);
+        } else {
+            // Same titles are rare, so their chain is simply walked to its end
+            int last = first;
+            while (link(last, NEXT_BY_TITLE) != 0) {
+                last = link(last, NEXT_BY_TITLE);
+            }
+            setLink(last, NEXT_BY_TITLE, record);
+        }
+
+        first = authors.getInt(4 * authorSlot);
+        if (first == 0) {
+            setLink(record, PREV_BY_AUTHOR, record);
+            authors.putInt(4 * authorSlot, record);
+            setHeader(AUTHOR_KEYS, header(AUTHOR_KEYS) + 1);
+        } else {
+            int last = link(first, PREV_BY_AUTHOR);
+            setLink(last, NEXT_BY_AUTHOR, record);
+            setLink(record, PREV_BY_AUTHOR, last);
+            setLink(first, PREV_BY_AUTHOR, record);
+        }
+        setHeader(LIVE, header(LIVE) + 1);
+    }
+
+    private void unlinkAuthor(int record) {
+        String key = Library.foldCase(readString(records.getLong(field(record, AUTHOR))));
+        int slot = authorSlot(key, key.hashCode());
+        int first = authors.getInt(4 * slot);
+        int next = link(record, NEXT_BY_AUTHOR);
+        int previous = link(record, PREV_BY_AUTHOR);
+        if (record == first) {
+            if (next != 0) {
+                setLink(next, PREV_BY_AUTHOR, previous);
+                authors.putInt(4 * slot, next);
+            } else {
+                removeSlot(authors, header(AUTHOR_CAPACITY), slot, AUTHOR_HASH);
+                setHeader(AUTHOR_KEYS, header(AUTHOR_KEYS) - 1);
+            }
+        } else {
+            setLink(previous, NEXT_BY_AUTHOR, next);
+            setLink(next != 0 ? next : first, PREV_BY_AUTHOR, previous);
+        }
+    }
+
+    // A record from the free list, or a new one at the end of the file
+    private int allocate() {
+        int record = header(FREE_HEAD);
+        if (record != 0) {
+            setHeader(FREE_HEAD, link(record, NEXT_BY_AUTHOR));
+            return record;
+        }
+        record = header(SLOTS) + 1;
+        long needed = HEADER_BYTES + (long) record * RECORD_BYTES;
+        if (needed > records.capacity()) {
+            if (needed > Integer.MAX_VALUE) throw new IllegalStateException("The catalog is full");
+            long capacity = Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * records.capacity()));
+            records = remap(recordFile, 0, capacity);
+        }
+        setHeader(SLOTS, record);
+        return record;
+    }
+
+    // The slot of the title's first record, or the free slot where it belongs
+    private int titleSlot(String key, int hash) {
+        int mask = header(TITLE_CAPACITY) - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int record = titles.getInt(4 * slot);
+            if (record == 0 || (records.getInt(field(record, TITLE_HASH)) == hash
+                    && Library.foldCase(readString(records.getLong(field(record, TITLE)))).equals(key))) {
+                return slot;
+            }
+        }
+    }
+
+    private int authorSlot(String key, int hash) {
+        int mask = header(AUTHOR_CAPACITY) - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int record = authors.getInt(4 * slot);
+            if (record == 0 || (records.getInt(field(record, AUTHOR_HASH)) == hash
+                    && Library.foldCase(readString(records.getLong(field(record, AUTHOR)))).equals(key))) {
+                return slot;
+            }
+        }
+    }
+
+    // Frees a slot of a linear-probing table, moving later entries of the probe run back
+    // into the gap so that lookups need no tombstones
+    private void removeSlot(MappedByteBuffer table, int capacity, int slot, int hashField) {
+        int mask = capacity - 1;
+        int gap = slot;
+        for (int i = (gap + 1) & mask; ; i = (i + 1) & mask) {
+            int record = table.getInt(4 * i);
+            if (record == 0) break;
+            int home = spread(records.getInt(field(record, hashField))) & mask;
+            // The entry may fill the gap unless its home lies cyclically in (gap, i]
+            boolean homeAfterGap = gap <= i ? gap < home && home <= i : gap < home || home <= i;
+            if (!homeAfterGap) {
+                table.putInt(4 * gap, record);
+                gap = i;
+            }
+        }
+        table.putInt(4 * gap, 0);
+    }
+
+    // Doubles a table, reinserting its entries by the hashes kept in their records
+    private MappedByteBuffer grow(FileChannel file, MappedByteBuffer table, int capacityField, int hashField) {
+        int capacity = header(capacityField);
+        int[] entries = new int[capacity];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int record = table.getInt(4 * slot);
+            if (record != 0) entries[count++] = record;
+        }
+        capacity *= 2;
+        MappedByteBuffer grown = remap(file, 0, 4L * capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            grown.putInt(4 * slot, 0);
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = spread(records.getInt(field(entries[i], hashField))) & mask;
+            while (grown.getInt(4 * slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown.putInt(4 * slot, entries[i]);
+        }
+        setHeader(capacityField, capacity);
+        return grown;
+    }
+
+    // Appends a string as its UTF-8 length and bytes; returns its arena offset
+    private long writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long length = 4L + bytes.length;
+        if (length > CHUNK_BYTES) throw new IllegalArgumentException("String too long for the arena");
+        long start = records.getLong(ARENA_END);
+        if ((start & (CHUNK_BYTES - 1)) + length > CHUNK_BYTES) start = ((start >>> CHUNK_BITS) + 1) << CHUNK_BITS;
+        int chunk = (int) (start >>> CHUNK_BITS);
+        int position = (int) (start & (CHUNK_BYTES - 1));
+        if (chunk == arena.size() || arena.get(chunk).capacity() < position + length) {
+            long current = chunk < arena.size() ? arena.get(chunk).capacity() : 0;
+            long size = Math.min(CHUNK_BYTES, Math.max(position + length, Math.max(1 << 20, 2 * current)));
+            MappedByteBuffer mapped = remap(arenaFile, (long) chunk << CHUNK_BITS, size);
+            if (chunk == arena.size()) {
+                arena.add(mapped);
+            } else {
+                arena.set(chunk, mapped);
+            }
+        }
+        MappedByteBuffer buffer = arena.get(chunk);
+        buffer.putInt(position, bytes.length);
+        buffer.put(position + 4, bytes);
+        records.putLong(ARENA_END, start + length);
+        return start;
+    }
+
+    private String readString(long offset) {
+        MappedByteBuffer buffer = arena.get((int) (offset >>> CHUNK_BITS));
+        int position = (int) (offset & (CHUNK_BYTES - 1));
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Book book(int record) {
+        return book(record, readString(records.getLong(field(record, AUTHOR))));
+    }
+
+    private Book book(int record, String author) {
+        return new Book(author, readString(records.getLong(field(record, TITLE))), records.getInt(field(record, YEAR)),
+                Status.fromCode(records.get(field(record, STATUS))));
+    }
+
+    private static MappedByteBuffer remap(FileChannel file, long position, long size) {
+        try {
+            return file.map(FileChannel.MapMode.READ_WRITE, position, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int field(int record, int offset) {
+        return HEADER_BYTES + (record - 1) * RECORD_BYTES + offset;
+    }
+
+    private int link(int record, int offset) {
+        return records.getInt(field(record, offset));
+    }
+
+    private void setLink(int record, int offset, int value) {
+        records.putInt(field(record, offset), value);
+    }
+
+    private int header(int offset) {
+        return records.getInt(offset);
+    }
+
+    private void setHeader(int offset, int value) {
+        records.putInt(offset, value);
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,119 @@
+package library;
+
+import java.util.*;
+
+// Least-recently-used cache of lookup results by key, bounded by the number of books it
+// holds (each entry also counts as one, so empty results are bounded too). A result
+// computed for a limit answers later requests for the same or a smaller limit, and any
+// limit once it came back short of its own. Counters are cumulative.
+class QueryCache {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final int capacity;
+    private final LinkedHashMap<FoldedKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    QueryCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private static class Entry {
+        final List<Book> books;
+        final int limit;
+
+        Entry(List<Book> books, int limit) {
+            this.books = books;
+            this.limit = limit;
+        }
+
+        int weight() {
+            return books.size() + 1;
+        }
+    }
+
+    // The cached result for up to limit books, or null on a miss
+    synchronized List<Book> get(FoldedKey key, int limit) {
+        Entry entry = entries.get(key);
+        if (entry == null || (entry.limit < limit && entry.books.size() == entry.limit)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.books.size() > limit ? entry.books.subList(0, limit) : entry.books;
+    }
+
+    // Caches a freshly computed result and returns it in the unmodifiable form that later hits share
+    synchronized List<Book> put(FoldedKey key, List<Book> books, int limit) {
+        List<Book> shared = Collections.unmodifiableList(books);
+        Entry entry = new Entry(shared, limit);
+        if (capacity == 0 || entry.weight() > capacity) return shared;
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null) weight -= replaced.weight();
+        weight += entry.weight();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (weight > capacity) {
+            weight -= eldest.next().weight();
+            eldest.remove();
+            evictions++;
+        }
+        return shared;
+    }
+
+    synchronized void invalidate(FoldedKey key) {
+        if (entries.isEmpty()) return;
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+            invalidations++;
+        }
+    }
+
+    // Drops the entries of every prefix of key, itself and the empty prefix included
+    synchronized void invalidatePrefixesOf(FoldedKey key) {
+        if (entries.isEmpty()) return;
+        String text = key.text();
+        for (int end = 0; end <= text.length(); end++) {
+            Entry removed = entries.remove(new FoldedKey(text.substring(0, end)));
+            if (removed != null) {
+                weight -= removed.weight();
+                invalidations++;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized long invalidations() {
+        return invalidations;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return entries.size() + " entries, " + hits + " hits, " + misses + " misses, " + evictions + " evictions, "
+                + invalidations + " invalidations";
+    }
+}
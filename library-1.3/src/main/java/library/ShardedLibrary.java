@@ -0,0 +1,213 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+// Facade over N independent Library shards, with books placed by a hash of the case-folded
+// title so that every book of a title lives in one shard. Lookups and changes by title go
+// to that shard alone; queries over authors, years or filters run on all shards in a
+// ForkJoinPool and merge, year-ordered results through a k-way merge by year with ties in
+// shard order. Each shard has its own lock, so writers to different shards do not wait for
+// each other, but a fan-out query is not atomic across shards.
+class ShardedLibrary {
+    private final Library[] shards;
+    private final ForkJoinPool pool;
+
+    ShardedLibrary(int shardCount) {
+        this(shardCount, ForkJoinPool.commonPool());
+    }
+
+    ShardedLibrary(int shardCount, ForkJoinPool pool) {
+        if (shardCount < 1) throw new IllegalArgumentException("shardCount must be at least 1");
+        shards = new Library[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Library();
+        }
+        this.pool = pool;
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    private Library shardFor(String title) {
+        return shards[shardIndex(title)];
+    }
+
+    private int shardIndex(String title) {
+        int hash = Library.foldedHash(title);
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    public void addBook(Book book) {
+        shardFor(book.getTitle()).addBook(book);
+    }
+
+    // Splits the books by shard, keeping their order, and adds each part in parallel
+    public void addAll(Collection<Book> books) {
+        List<List<Book>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>(books.size() / shards.length + 16));
+        }
+        for (Book book : books) {
+            parts.get(shardIndex(book.getTitle())).add(book);
+        }
+        fanOut(i -> {
+            shards[i].addAll(parts.get(i));
+            return null;
+        });
+    }
+
+    public Book searchBookByTitle(String title) {
+        return shardFor(title).searchBookByTitle(title);
+    }
+
+    public boolean deleteBook(String title) {
+        return shardFor(title).deleteBook(title);
+    }
+
+    public boolean updateStatus(String title, Status status) {
+        return shardFor(title).updateStatus(title, status);
+    }
+
+    // All copies of a title live in one shard, so these stay O(1) and atomic
+    public Book findAvailableCopy(String title) {
+        return shardFor(title).findAvailableCopy(title);
+    }
+
+    public Book checkout(String title) {
+        return shardFor(title).checkout(title);
+    }
+
+    public Book checkin(String title) {
+        return shardFor(title).checkin(title);
+    }
+
+    public int countCopies(String title, Status status) {
+        return shardFor(title).countCopies(title, status);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Library shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public int countByStatus(Status status) {
+        int count = 0;
+        for (Library shard : shards) {
+            count += shard.countByStatus(status);
+        }
+        return count;
+    }
+
+    // Books by the author, ignoring case, in year order
+    public List<Book> getBooksByAuthor(String author) {
+        return mergeByYear(fanOut(i -> {
+            List<Book> books = new ArrayList<>(shards[i].getBooksByAuthor(author));
+            books.sort(Comparator.comparingInt(Book::getYearOfPublish));
+            return books;
+        }), false, Integer.MAX_VALUE);
+    }
+
+    // Books published between from and to, both inclusive, in year order
+    public List<Book> getBooksByYearRange(int from, int to) {
+        return mergeByYear(fanOut(i -> shards[i].getBooksByYearRange(from, to)), false, Integer.MAX_VALUE);
+    }
+
+    // The n most recently published books, newest first
+    public List<Book> getNewest(int n) {
+        return mergeByYear(fanOut(i -> shards[i].getNewest(n)), true, n);
+    }
+
+    // Every book in year order, from the year index of each shard; nothing is re-sorted
+    public List<Book> booksByYear() {
+        return mergeByYear(fanOut(i -> shards[i].getPage(0, Integer.MAX_VALUE, true)), false, Integer.MAX_VALUE);
+    }
+
+    // Books matching the filter, shard by shard, at most limit of them
+    public List<Book> find(BookFilter filter, int limit) {
+        List<Book> books = new ArrayList<>();
+        for (List<Book> part : fanOut(i -> shards[i].find(filter, limit))) {
+            for (Book book : part) {
+                if (books.size() == limit) return books;
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    public int count(BookFilter filter) {
+        int count = 0;
+        for (int part : fanOut(i -> shards[i].count(filter))) {
+            count += part;
+        }
+        return count;
+    }
+
+    // Sorts every shard's list by year in parallel
+    public void sortBooksByYear() {
+        fanOut(i -> {
+            shards[i].sortBooksByYear();
+            return null;
+        });
+    }
+
+    // Runs the query for every shard index, one fork/join task each, and returns the results
+    // in shard order; a single shard is queried on the calling thread
+    private <T> List<T> fanOut(IntFunction<T> query) {
+        if (shards.length == 1) return Collections.singletonList(query.apply(0));
+        List<RecursiveTask<T>> tasks = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            tasks.add(new RecursiveTask<T>() {
+                @Override
+                protected T compute() {
+                    return query.apply(shard);
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        List<T> results = new ArrayList<>(shards.length);
+        for (RecursiveTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    // K-way merge of lists that are each in year order, ascending or descending, through a
+    // heap of one cursor per list; equal years are taken from the lower list index first
+    static List<Book> mergeByYear(List<List<Book>> runs, boolean descending, int limit) {
+        int total = 0;
+        for (List<Book> run : runs) {
+            total += run.size();
+        }
+        List<Book> merged = new ArrayList<>(Math.min(total, limit));
+        int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int yearA = runs.get(a).get(positions[a]).getYearOfPublish();
+            int yearB = runs.get(b).get(positions[b]).getYearOfPublish();
+            int byYear = descending ? Integer.compare(yearB, yearA) : Integer.compare(yearA, yearB);
+            return byYear != 0 ? byYear : Integer.compare(a, b);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            if (!runs.get(i).isEmpty()) heap.add(i);
+        }
+        while (!heap.isEmpty() && merged.size() < limit) {
+            int run = heap.poll();
+            merged.add(runs.get(run).get(positions[run]++));
+            if (positions[run] < runs.get(run).size()) heap.add(run);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,63 @@
+package library;
+
+import java.nio.ByteBuffer;
+
+// Enum representing the status of a book
+enum Status {
+    BANNED(1), BORROWED(2), EXIT(3);
+
+    private final int code;
+    // toString text, built once because it is printed for every displayed book
+    private final String label;
+
+    Status(int code) {
+        this.code = code;
+        this.label = name() + "(" + code + ")";
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    private static final Status[] VALUES = values();
+
+    // The constant with the given code, or null if no constant has it
+    static Status fromCode(int code) {
+        for (Status status : VALUES) {
+            if (status.code == code) return status;
+        }
+        return null;
+    }
+
+    // Case-insensitive match of the text, ignoring surrounding whitespace, against the constant
+    // names, without making a trimmed or upper-cased copy; null if none match
+    static Status parse(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        for (Status status : VALUES) {
+            String name = status.name();
+            if (name.length() == end - start && name.regionMatches(true, 0, text, start, end - start)) return status;
+        }
+        return null;
+    }
+
+    // Case-insensitive match of the ASCII bytes in [start, end) against the constant names,
+    // without decoding them; null if none match
+    static Status match(ByteBuffer bytes, int start, int end) {
+        for (Status status : VALUES) {
+            String name = status.name();
+            if (name.length() != end - start) continue;
+            int i = 0;
+            while (i < name.length() && (bytes.get(start + i) | 0x20) == (name.charAt(i) | 0x20)) i++;
+            if (i == name.length()) return status;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
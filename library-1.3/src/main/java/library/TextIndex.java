@@ -0,0 +1,335 @@
+package library;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+// Partial-match index over a set of keys, matched case-insensitively: keys are folded by
+// Library.foldCase, queries must come folded, and visitors see the folded keys. A sorted
+// set answers prefix queries; substring queries go through trigram posting lists of key
+// ids, using the shortest list among the query's trigrams and checking each candidate key.
+//
+// Adding a key only records it as given. Folding it, posting its trigrams and, once there
+// is one, adding it to the sorted set wait for the next query, which catches up on every
+// key added since in one pass. A bulk load calls build instead, which does all of that at
+// once and builds the sorted set in one linear pass, so that no query pays for the load.
+// Changes come under the owner's write lock and queries under its read lock, so queries
+// run concurrently and the first to find the index behind catches up for all of them.
+class TextIndex {
+    // Built on the first query that needs key order
+    private volatile NavigableSet<String> keys;
+    // Folded key to id, built on the first remove, the only user of it
+    private Map<String, Integer> idOf;
+    // Key by id, folded below posted and maybe not from there on; removed keys leave a
+    // null until the next rebuild
+    private final List<String> keyOf = new ArrayList<>();
+    // Posting lists by packed trigram, in an open-addressing table so that indexing a key
+    // does not box a Long per trigram; a null list marks a free slot
+    private long[] trigrams = new long[1024];
+    private IntList[] postings = new IntList[1024];
+    private int trigramCount;
+    private volatile int posted;
+    private int removed;
+
+    void add(String key) {
+        if (idOf != null) {
+            key = Library.foldCase(key);
+            idOf.put(key, keyOf.size());
+        }
+        keyOf.add(key);
+    }
+
+    // Brings the index up to date with every key added since the last query and builds the
+    // sorted set if there is none, for a bulk load under the owner's write lock. The new
+    // keys are sorted once and merged with the old, and the set built in one linear pass.
+    synchronized void build() {
+        int from = posted;
+        NavigableSet<String> sorted = keys;
+        if (sorted != null && from == keyOf.size()) return;
+        // Keeps catchUp from inserting the new keys one by one
+        keys = null;
+        catchUp();
+
+        List<String> added = new ArrayList<>(keyOf.size() - from);
+        for (String key : keyOf.subList(from, keyOf.size())) {
+            if (key != null) added.add(key);
+        }
+        Collections.sort(added);
+        List<String> earlier = new ArrayList<>();
+        if (sorted != null) {
+            earlier.addAll(sorted);
+        } else if (from > 0) {
+            for (String key : keyOf.subList(0, from)) {
+                if (key != null) earlier.add(key);
+            }
+            Collections.sort(earlier);
+        }
+        keys = new TreeSet<>(new SortedList(merge(earlier, added)));
+    }
+
+    void remove(String key) {
+        String folded = Library.foldCase(key);
+        NavigableSet<String> sorted = keys;
+        if (sorted != null) sorted.remove(folded);
+        keyOf.set(ids().remove(folded), null);
+        removed++;
+        // Dead ids only cost time on lookups, so they are swept once they dominate
+        if (removed > 1024 && removed > keyOf.size() / 2) {
+            rebuild();
+        }
+    }
+
+    // Visits keys starting with prefix in key order until the visitor returns false
+    void forEachWithPrefix(String prefix, Predicate<String> visitor) {
+        for (String key : sortedKeys().tailSet(prefix, true)) {
+            if (!key.startsWith(prefix) || !visitor.test(key)) return;
+        }
+    }
+
+    // Visits keys containing text, oldest first, until the visitor returns false
+    void forEachContaining(String text, Predicate<String> visitor) {
+        if (text.length() < 3) {
+            // Too short for a trigram; stop at the first page of hits
+            for (String key : sortedKeys()) {
+                if (key.contains(text) && !visitor.test(key)) return;
+            }
+            return;
+        }
+
+        if (posted < keyOf.size()) catchUp();
+        IntList shortest = null;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            IntList list = postings[slot(trigram(text, i))];
+            if (list == null) return; // Some trigram of the query occurs in no key
+            if (shortest == null || list.size < shortest.size) shortest = list;
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            String key = keyOf.get(shortest.values[i]);
+            if (key != null && key.contains(text) && !visitor.test(key)) return;
+        }
+    }
+
+    // Rough heap size, on the same terms as Library.estimatedIndexBytes; keys are shared
+    // with the Library indexes and not counted again
+    long estimatedBytes() {
+        long bytes = keyOf.size() * 4L;
+        if (keys != null) bytes += keys.size() * 40L;
+        if (idOf != null) bytes += idOf.size() * 56L;
+        bytes += postings.length * 12L;
+        for (IntList list : postings) {
+            if (list != null) bytes += 32 + list.values.length * 4L;
+        }
+        return bytes;
+    }
+
+    private NavigableSet<String> sortedKeys() {
+        if (posted < keyOf.size()) catchUp();
+        NavigableSet<String> sorted = keys;
+        return sorted != null ? sorted : sortKeys();
+    }
+
+    private synchronized NavigableSet<String> sortKeys() {
+        if (keys == null) {
+            List<String> live = new ArrayList<>(keyOf.size() - removed);
+            for (String key : keyOf) {
+                if (key != null) live.add(key);
+            }
+            Collections.sort(live);
+            keys = new TreeSet<>(new SortedList(live));
+        }
+        return keys;
+    }
+
+    // Both lists are sorted
+    private static List<String> merge(List<String> a, List<String> b) {
+        if (a.isEmpty()) return b;
+        List<String> merged = new ArrayList<>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int compared = a.get(i).compareTo(b.get(j));
+            merged.add(compared <= 0 ? a.get(i++) : b.get(j++));
+            if (compared == 0) j++;
+        }
+        merged.addAll(a.subList(i, a.size()));
+        merged.addAll(b.subList(j, b.size()));
+        return merged;
+    }
+
+    // A sorted list passed off as a SortedSet: a TreeSet made from a SortedSet builds its tree
+    // in one linear pass instead of inserting the keys one by one. Only what that needs works.
+    private static class SortedList extends AbstractSet<String> implements SortedSet<String> {
+        private final List<String> keys;
+
+        SortedList(List<String> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return keys.iterator();
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+
+        @Override
+        public String first() {
+            return keys.get(0);
+        }
+
+        @Override
+        public String last() {
+            return keys.get(keys.size() - 1);
+        }
+
+        @Override
+        public SortedSet<String> subSet(String fromElement, String toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<String> headSet(String toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<String> tailSet(String fromElement) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private Map<String, Integer> ids() {
+        if (idOf == null) {
+            idOf = new HashMap<>(keyOf.size() * 4 / 3 + 1);
+            for (int id = 0; id < keyOf.size(); id++) {
+                String key = keyOf.get(id);
+                if (key == null) continue;
+                // Folded for good, so the catch-up finds nothing left to fold
+                key = Library.foldCase(key);
+                keyOf.set(id, key);
+                idOf.put(key, id);
+            }
+        }
+        return idOf;
+    }
+
+    // Brings everything up to date with the keys added since the last call. Each trigram of
+    // the new keys is looked up once, and its posting list kept for the posting pass; after
+    // a bulk load every list is grown once to fit all of its new ids, leaving no slack.
+    private synchronized void catchUp() {
+        int from = posted;
+        int to = keyOf.size();
+        if (from == to) return;
+
+        NavigableSet<String> sorted = keys;
+        int occurrences = 0;
+        for (int id = from; id < to; id++) {
+            if (keyOf.get(id) == null) continue;
+            String key = Library.foldCase(keyOf.get(id));
+            keyOf.set(id, key);
+            if (sorted != null) sorted.add(key);
+            occurrences += Math.max(0, key.length() - 2);
+        }
+
+        boolean bulk = to - from > postings.length;
+        IntList[] lists = new IntList[occurrences];
+        int n = 0;
+        for (int id = from; id < to; id++) {
+            String key = keyOf.get(id);
+            if (key == null) continue;
+            long trigram = 0;
+            for (int i = 0; i < key.length(); i++) {
+                trigram = nextTrigram(trigram, key.charAt(i));
+                if (i < 2) continue;
+                int slot = slot(trigram);
+                IntList list = postings[slot];
+                if (list == null) {
+                    list = postings[slot] = new IntList();
+                    trigrams[slot] = trigram;
+                    if (++trigramCount * 2 > postings.length) grow();
+                }
+                if (bulk) list.pending++;
+                lists[n++] = list;
+            }
+        }
+        if (bulk) {
+            for (IntList list : postings) {
+                if (list != null && list.pending > 0) {
+                    list.reserve(list.pending);
+                    list.pending = 0;
+                }
+            }
+        }
+
+        n = 0;
+        for (int id = from; id < to; id++) {
+            String key = keyOf.get(id);
+            if (key == null) continue;
+            for (int i = 2; i < key.length(); i++) {
+                IntList list = lists[n++];
+                // A key repeating a trigram would otherwise list its id twice
+                if (list.size == 0 || list.values[list.size - 1] != id) {
+                    list.add(id);
+                }
+            }
+        }
+        posted = to;
+    }
+
+    // Drops the dead ids, leaving the postings to be rebuilt by the next catch-up
+    private void rebuild() {
+        List<String> live = new ArrayList<>(keyOf.size() - removed);
+        for (String key : keyOf) {
+            if (key != null) live.add(key);
+        }
+        keyOf.clear();
+        keyOf.addAll(live);
+        idOf = null;
+        trigrams = new long[1024];
+        postings = new IntList[1024];
+        trigramCount = 0;
+        posted = 0;
+        removed = 0;
+    }
+
+    // The slot holding the trigram, or the free slot where it belongs
+    private int slot(long trigram) {
+        int mask = postings.length - 1;
+        int slot = Long.hashCode(trigram * 0x9E3779B97F4A7C15L) & mask;
+        while (postings[slot] != null && trigrams[slot] != trigram) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldTrigrams = trigrams;
+        IntList[] oldPostings = postings;
+        trigrams = new long[oldPostings.length * 2];
+        postings = new IntList[oldPostings.length * 2];
+        for (int i = 0; i < oldPostings.length; i++) {
+            if (oldPostings[i] != null) {
+                int slot = slot(oldTrigrams[i]);
+                trigrams[slot] = oldTrigrams[i];
+                postings[slot] = oldPostings[i];
+            }
+        }
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    // The trigram ending in c, given the one ending just before it: one charAt per position
+    // rather than three when scanning a whole key
+    private static long nextTrigram(long trigram, char c) {
+        return (trigram << 16 | c) & 0xFFFF_FFFF_FFFFL;
+    }
+}
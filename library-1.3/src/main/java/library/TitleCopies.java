@@ -0,0 +1,41 @@
+package library;
+
+import java.util.*;
+
+// The copies of one title grouped by status, each group a stack in which every node knows
+// its own place, so that a copy is found, added, removed or moved to another status in O(1)
+class TitleCopies {
+    private final List<List<LinkedListNode<Book>>> byStatus = new ArrayList<>(Status.values().length);
+
+    TitleCopies() {
+        for (int i = 0; i < Status.values().length; i++) {
+            byStatus.add(new ArrayList<>(2));
+        }
+    }
+
+    void add(LinkedListNode<Book> node) {
+        List<LinkedListNode<Book>> stack = byStatus.get(node.data.getStatus().ordinal());
+        node.copySlot = stack.size();
+        stack.add(node);
+    }
+
+    // The node must still have the status it was added with
+    void remove(LinkedListNode<Book> node) {
+        List<LinkedListNode<Book>> stack = byStatus.get(node.data.getStatus().ordinal());
+        LinkedListNode<Book> last = stack.remove(stack.size() - 1);
+        if (last != node) {
+            stack.set(node.copySlot, last);
+            last.copySlot = node.copySlot;
+        }
+    }
+
+    // The copy added last among those with the status, or null if there is none
+    LinkedListNode<Book> peek(Status status) {
+        List<LinkedListNode<Book>> stack = byStatus.get(status.ordinal());
+        return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+    }
+
+    int count(Status status) {
+        return byStatus.get(status.ordinal()).size();
+    }
+}
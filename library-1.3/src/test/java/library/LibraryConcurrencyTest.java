@@ -0,0 +1,171 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+
+// Stress test: readers check every answer they get while writers add, delete, update and
+// sort, and the library must be consistent once they are done. The throughput of 1, 4 and
+// 16 readers, with and without a writer, is measured by LibraryBenchmark.benchmarkConcurrentReads.
+class LibraryConcurrencyTest {
+    private static final int BOOKS = 10_000;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int WRITES = 5_000;
+
+    @Test
+    void readersAndWritersKeepTheLibraryConsistent() throws InterruptedException {
+        Library library = new Library();
+        for (int i = 0; i < BOOKS; i++) {
+            library.addBook(new Book("Author " + i % 100, "Book " + i, 1900 + i % 100, Status.EXIT));
+        }
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger writersLeft = new AtomicInteger(WRITERS);
+        LongAdder reads = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> run(start, failures, () -> {
+                Random random = new Random(writer);
+                try {
+                    write(library, writer, random);
+                } finally {
+                    // Readers stop with the last writer, even one that failed
+                    if (writersLeft.decrementAndGet() == 0) writing.set(false);
+                }
+            })));
+        }
+        for (int r = 0; r < READERS; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> run(start, failures, () -> {
+                Random random = new Random(100 + reader);
+                while (writing.get()) {
+                    String title = random.nextBoolean() ? "BOOK " + random.nextInt(BOOKS)
+                            : title(random.nextInt(WRITERS), random.nextInt(WRITES));
+                    Book book = library.searchBookByTitle(title);
+                    if (book != null && !book.getTitle().equalsIgnoreCase(title)) {
+                        throw new AssertionError(title + " found " + book);
+                    }
+                    String author = "author " + random.nextInt(100);
+                    for (Book byAuthor : library.getBooksByAuthor(author)) {
+                        if (!byAuthor.getAuthor().equalsIgnoreCase(author)) {
+                            throw new AssertionError(author + " found " + byAuthor);
+                        }
+                    }
+                    if (library.getPage(random.nextInt(BOOKS), 20, random.nextBoolean()).size() > 20) {
+                        throw new AssertionError("Page too long");
+                    }
+                    reads.increment();
+                }
+            })));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> "Failed: " + failures);
+        assertTrue(reads.sum() > 0);
+        // Every writer deleted the even titles it added and kept the odd ones
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int i = 0; i < WRITES; i++) {
+                if (i % 2 == 0) {
+                    assertNull(library.searchBookByTitle(title(writer, i)));
+                } else {
+                    assertNotNull(library.searchBookByTitle(title(writer, i)));
+                }
+            }
+        }
+        int expected = BOOKS + WRITERS * WRITES / 2;
+        assertEquals(expected, library.size());
+        AtomicInteger listed = new AtomicInteger();
+        library.forEachBook(book -> listed.incrementAndGet());
+        assertEquals(expected, listed.get());
+        int byStatus = 0;
+        for (Status status : Status.values()) {
+            byStatus += library.countByStatus(status);
+        }
+        assertEquals(expected, byStatus);
+        library.sortBooksByYear();
+        int[] previousYear = {Integer.MIN_VALUE};
+        library.forEachBook(book -> {
+            assertTrue(book.getYearOfPublish() >= previousYear[0]);
+            previousYear[0] = book.getYearOfPublish();
+        });
+    }
+
+    @Test
+    void concurrentCheckoutsNeverLendTheSameCopy() throws InterruptedException {
+        Library library = new Library();
+        for (int i = 0; i < 1_000; i++) {
+            library.addBook(new Book("Frank Herbert", "Dune", 1965, i % 2 == 0 ? Status.EXIT : Status.BANNED));
+        }
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        LongAdder lent = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> run(start, failures, () -> {
+                while (library.checkout("dune") != null) {
+                    lent.increment();
+                }
+            })));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> "Failed: " + failures);
+        assertEquals(500, lent.sum());
+        assertEquals(500, library.countCopies("Dune", Status.BORROWED));
+        assertEquals(0, library.countCopies("Dune", Status.EXIT));
+        assertEquals(500, library.countCopies("Dune", Status.BANNED));
+    }
+
+    // Each writer owns its titles, so what must be left of them is known
+    private static void write(Library library, int writer, Random random) {
+        for (int i = 0; i < WRITES; i++) {
+            library.addBook(new Book("Writer " + writer, title(writer, i), 1900 + random.nextInt(200), Status.EXIT));
+            if (i % 2 == 1 && !library.deleteBook(title(writer, i - 1))) {
+                throw new AssertionError("Lost " + title(writer, i - 1));
+            }
+            library.updateStatus("Book " + random.nextInt(BOOKS), Status.BORROWED);
+            if (i % 1_000 == 0) library.sortBooksByYear();
+        }
+    }
+
+    private static String title(int writer, int i) {
+        return "Writer " + writer + " book " + i;
+    }
+
+    private static void run(CountDownLatch start, Queue<Throwable> failures, Runnable body) {
+        try {
+            start.await();
+            body.run();
+        } catch (Throwable e) {
+            failures.add(e);
+        }
+    }
+}
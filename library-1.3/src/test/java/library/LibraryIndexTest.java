@@ -0,0 +1,219 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Differential test: every indexed lookup must answer exactly as a linear scan of the books
+// in list order with String.equalsIgnoreCase would, through adds, deletes, status changes
+// and sorts; partial matches must find the same books as a scan of the folded strings
+class LibraryIndexTest {
+    // Case variants that a naive toLowerCase key gets wrong: the Kelvin sign folds to k,
+    // dotted and dotless i, titlecase digraphs, sharp s and a supplementary letter
+    private static final String[] TITLES = {
+            "Dune", "DUNE", "dune", "Kelvin", "Kelvin", "Istanbul", "İstanbul", "ıstanbul",
+            "ǅebra", "ǄEBRA", "Straße", "STRASSE", "𐐀bc", "𐐨bc"};
+    private static final String[] AUTHORS = {"Frank Herbert", "FRANK HERBERT", "frank herbert", "Kurt", "kurt"};
+
+    @Test
+    void indexedLookupsMatchALinearScan() {
+        Random random = new Random(42);
+        Library library = new Library();
+        List<Book> reference = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String title = TITLES[random.nextInt(TITLES.length)];
+            switch (random.nextInt(10)) {
+                case 0:
+                case 1:
+                case 2: {
+                    Book book = new Book(AUTHORS[random.nextInt(AUTHORS.length)], title, 1990 + random.nextInt(5),
+                            Status.values()[random.nextInt(Status.values().length)]);
+                    library.addBook(book);
+                    reference.add(book);
+                    break;
+                }
+                case 3: {
+                    int first = firstWithTitle(reference, title);
+                    assertEquals(first >= 0, library.deleteBook(title), "deleteBook " + title);
+                    if (first >= 0) reference.remove(first);
+                    break;
+                }
+                case 4: {
+                    Status status = Status.values()[random.nextInt(Status.values().length)];
+                    int first = firstWithTitle(reference, title);
+                    assertEquals(first >= 0, library.updateStatus(title, status), "updateStatus " + title);
+                    if (first >= 0) reference.set(first, reference.get(first).withStatus(status));
+                    break;
+                }
+                case 5:
+                    if (random.nextInt(20) == 0) {
+                        library.sortBooksByYear();
+                        reference.sort(Comparator.comparingInt(Book::getYearOfPublish));
+                    } else if (random.nextInt(20) == 0) {
+                        // The bulk path indexes books its own way
+                        List<Book> books = new ArrayList<>();
+                        for (int j = random.nextInt(50); j > 0; j--) {
+                            books.add(new Book(AUTHORS[random.nextInt(AUTHORS.length)],
+                                    TITLES[random.nextInt(TITLES.length)], 1990 + random.nextInt(5), Status.EXIT));
+                        }
+                        library.addAll(books);
+                        reference.addAll(books);
+                    }
+                    break;
+                case 6:
+                case 7: {
+                    int first = firstWithTitle(reference, title);
+                    assertEquals(first >= 0 ? describe(reference.get(first)) : null,
+                            describe(library.searchBookByTitle(title)), "searchBookByTitle " + title);
+                    break;
+                }
+                case 8:
+                    assertPartialMatches(reference, library, random);
+                    break;
+                default: {
+                    String author = AUTHORS[random.nextInt(AUTHORS.length)];
+                    List<String> expected = new ArrayList<>();
+                    for (Book book : reference) {
+                        if (book.getAuthor().equalsIgnoreCase(author)) expected.add(describe(book));
+                    }
+                    List<String> actual = new ArrayList<>();
+                    for (Book book : library.getBooksByAuthor(author)) {
+                        actual.add(describe(book));
+                    }
+                    assertEquals(expected, actual, "getBooksByAuthor " + author);
+                }
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        reference.forEach(book -> expected.add(describe(book)));
+        List<String> actual = new ArrayList<>();
+        library.forEachBook(book -> actual.add(describe(book)));
+        assertEquals(expected, actual);
+        assertEquals(reference.size(), library.size());
+    }
+
+    @Test
+    void restoredSnapshotAnswersLikeTheSavedLibrary(@TempDir Path dir) throws IOException {
+        Random random = new Random(7);
+        Library saved = new Library();
+        List<Book> reference = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            // Case variants of one author are separate entries of the snapshot's dictionary
+            Book book = new Book(AUTHORS[random.nextInt(AUTHORS.length)], TITLES[random.nextInt(TITLES.length)],
+                    1990 + random.nextInt(5), Status.values()[random.nextInt(Status.values().length)]);
+            saved.addBook(book);
+            reference.add(book);
+        }
+        Path snapshot = dir.resolve("library.snap");
+        saved.saveSnapshot(snapshot.toString());
+
+        // Restored into an empty library, and appended to one that has books of the same authors
+        // and half the titles, with its indexes built, so the restore merges the other half in
+        Library empty = new Library();
+        assertEquals(reference.size(), empty.loadSnapshot(snapshot.toString()));
+        Library appended = new Library();
+        List<Book> appendedReference = new ArrayList<>();
+        for (Book book : reference.subList(0, 200)) {
+            if (Arrays.asList(TITLES).indexOf(book.getTitle()) < TITLES.length / 2) appendedReference.add(book);
+        }
+        appended.addAll(appendedReference);
+        appended.searchTitlesContaining("une", Integer.MAX_VALUE);
+        appended.searchTitlesByPrefix("k", Integer.MAX_VALUE);
+        appended.loadSnapshot(snapshot.toString());
+        appendedReference.addAll(reference);
+
+        for (Library library : List.of(empty, appended)) {
+            List<Book> expectedBooks = library == empty ? reference : appendedReference;
+            List<String> expected = new ArrayList<>();
+            expectedBooks.forEach(book -> expected.add(describe(book)));
+            List<String> actual = new ArrayList<>();
+            library.forEachBook(book -> actual.add(describe(book)));
+            assertEquals(expected, actual);
+            for (String author : AUTHORS) {
+                List<String> byAuthor = new ArrayList<>();
+                for (Book book : expectedBooks) {
+                    if (book.getAuthor().equalsIgnoreCase(author)) byAuthor.add(describe(book));
+                }
+                List<String> found = new ArrayList<>();
+                library.getBooksByAuthor(author).forEach(book -> found.add(describe(book)));
+                assertEquals(byAuthor, found, "getBooksByAuthor " + author);
+            }
+            for (int i = 0; i < 200; i++) {
+                assertPartialMatches(expectedBooks, library, random);
+            }
+            List<String> titleOrder = new ArrayList<>();
+            for (Book book : library.searchTitlesByPrefix("", Integer.MAX_VALUE)) {
+                titleOrder.add(Library.foldCase(book.getTitle()));
+            }
+            assertEquals(sorted(new ArrayList<>(titleOrder)), titleOrder, "prefix matches in title order");
+        }
+    }
+
+    // Prefix and substring searches of titles and authors, for a random piece of a known
+    // title or author in random case, against a scan of the folded strings
+    private static void assertPartialMatches(List<Book> reference, Library library, Random random) {
+        String source = random.nextBoolean() ? TITLES[random.nextInt(TITLES.length)]
+                : AUTHORS[random.nextInt(AUTHORS.length)];
+        int start = random.nextInt(source.length());
+        String query = source.substring(start, Math.min(source.length(), start + 1 + random.nextInt(5)));
+        query = random.nextBoolean() ? query.toUpperCase() : query;
+        String folded = Library.foldCase(query);
+        String prefix = source.substring(0, 1 + random.nextInt(source.length()));
+        String foldedPrefix = Library.foldCase(prefix);
+
+        List<String> titlesContaining = new ArrayList<>();
+        List<String> titlesByPrefix = new ArrayList<>();
+        List<String> authorsContaining = new ArrayList<>();
+        List<String> authorsByPrefix = new ArrayList<>();
+        for (Book book : reference) {
+            String title = Library.foldCase(book.getTitle());
+            String author = Library.foldCase(book.getAuthor());
+            if (title.contains(folded)) titlesContaining.add(describe(book));
+            if (title.startsWith(foldedPrefix)) titlesByPrefix.add(describe(book));
+            if (author.contains(folded)) authorsContaining.add(describe(book));
+            if (author.startsWith(foldedPrefix)) authorsByPrefix.add(describe(book));
+        }
+        int all = Integer.MAX_VALUE;
+        assertEquals(sorted(titlesContaining), describeSorted(library.searchTitlesContaining(query, all)),
+                "searchTitlesContaining " + query);
+        assertEquals(sorted(titlesByPrefix), describeSorted(library.searchTitlesByPrefix(prefix, all)),
+                "searchTitlesByPrefix " + prefix);
+        assertEquals(sorted(authorsContaining), describeSorted(library.searchAuthorsContaining(query, all)),
+                "searchAuthorsContaining " + query);
+        assertEquals(sorted(authorsByPrefix), describeSorted(library.searchAuthorsByPrefix(prefix, all)),
+                "searchAuthorsByPrefix " + prefix);
+    }
+
+    private static List<String> describeSorted(List<Book> books) {
+        List<String> described = new ArrayList<>();
+        books.forEach(book -> described.add(describe(book)));
+        return sorted(described);
+    }
+
+    private static List<String> sorted(List<String> strings) {
+        Collections.sort(strings);
+        return strings;
+    }
+
+    private static int firstWithTitle(List<Book> books, String title) {
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).getTitle().equalsIgnoreCase(title)) return i;
+        }
+        return -1;
+    }
+
+    private static String describe(Book book) {
+        if (book == null) return null;
+        return book.getTitle() + " by " + book.getAuthor() + " (" + book.getYearOfPublish() + ", "
+                + book.getStatus().name() + ")";
+    }
+}
@@ -0,0 +1,70 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LibraryServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private LibraryServer server;
+    private String base;
+
+    @BeforeEach
+    void start() throws IOException {
+        Library library = new Library();
+        library.addBook(new Book("Frank Herbert", "Dune", 1965, Status.EXIT));
+        server = new LibraryServer(library, null, 0);
+        server.start();
+        base = "http://localhost:" + server.port();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void malformedPercentEncodingIsABadRequest() throws Exception {
+        // In a form body, since java.net.URI refuses the escape in a query string
+        HttpResponse<String> response = send("POST", "/books/status", "title=%zz&status=EXIT");
+        assertEquals(400, response.statusCode());
+        // The server still answers afterwards
+        assertEquals(200, send("GET", "/books?title=dune").statusCode());
+    }
+
+    @Test
+    void statusUpdateAnswersWithTheUpdatedBook() throws Exception {
+        HttpResponse<String> response = send("POST", "/books/status?title=DUNE&status=BORROWED");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"author\":\"Frank Herbert\",\"title\":\"Dune\",\"year\":1965,\"status\":\"BORROWED\"}",
+                response.body());
+        assertEquals(404, send("POST", "/books/status?title=Emma&status=EXIT").statusCode());
+    }
+
+    @Test
+    void addsAndDeletesAreApplied() throws Exception {
+        assertEquals(201, send("POST", "/books?author=Jane+Austen&title=Emma&year=1815&status=EXIT").statusCode());
+        assertEquals(200, send("GET", "/books?title=emma").statusCode());
+        assertEquals(200, send("DELETE", "/books?title=Emma").statusCode());
+        assertEquals(404, send("DELETE", "/books?title=Emma").statusCode());
+        assertEquals(404, send("GET", "/books?title=emma").statusCode());
+    }
+
+    private HttpResponse<String> send(String method, String path) throws Exception {
+        return send(method, path, "");
+    }
+
+    private HttpResponse<String> send(String method, String path, String form) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .method(method, HttpRequest.BodyPublishers.ofString(form)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
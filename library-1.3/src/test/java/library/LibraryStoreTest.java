@@ -0,0 +1,216 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LibraryStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void deleteAfterSortIsReplayedOnTheSortedOrder() throws IOException {
+        Library live = new Library();
+        try (LibraryStore store = LibraryStore.open(directory.toString(), live)) {
+            store.addBook(new Book("Frank Herbert", "Dune", 2000, Status.EXIT));
+            store.addBook(new Book("Frank Herbert", "Dune", 1990, Status.EXIT));
+            store.sortBooksByYear();
+            store.deleteBook("Dune");
+        }
+        assertEquals(List.of("Dune by Frank Herbert (2000, EXIT)"), describe(live));
+        assertEquals(describe(live), describe(reopen()));
+    }
+
+    @Test
+    void checkoutAfterSortIsReplayedOnTheSameCopy() throws IOException {
+        Library live = new Library();
+        try (LibraryStore store = LibraryStore.open(directory.toString(), live)) {
+            store.addBook(new Book("Frank Herbert", "Dune", 2000, Status.BORROWED));
+            store.addBook(new Book("Frank Herbert", "Dune", 1990, Status.EXIT));
+            store.sortBooksByYear();
+            store.checkout("Dune");
+        }
+        assertEquals(List.of("Dune by Frank Herbert (1990, BORROWED)", "Dune by Frank Herbert (2000, BORROWED)"),
+                describe(live));
+        assertEquals(describe(live), describe(reopen()));
+    }
+
+    // Many identical copies, so only the rank tells the one a checkout or checkin moved
+    @Test
+    void randomMutationsReplayToTheSameLibrary() throws IOException {
+        Random random = new Random(42);
+        Library live = new Library();
+        try (LibraryStore store = LibraryStore.open(directory.toString(), live)) {
+            for (int i = 0; i < 2_000; i++) {
+                String title = "Title " + random.nextInt(5);
+                switch (random.nextInt(8)) {
+                    case 0:
+                    case 1:
+                        store.addBook(new Book("Author " + random.nextInt(2), title, 2000 + random.nextInt(3),
+                                Status.values()[random.nextInt(Status.values().length)]));
+                        break;
+                    case 2:
+                        store.checkout(title);
+                        break;
+                    case 3:
+                        store.checkin(title);
+                        break;
+                    case 4:
+                        store.updateStatus(title, Status.values()[random.nextInt(Status.values().length)]);
+                        break;
+                    case 5:
+                        store.sortBooksByYear();
+                        break;
+                    case 6:
+                        if (random.nextInt(4) == 0) store.deleteBook(title);
+                        break;
+                    default:
+                        if (random.nextInt(50) == 0) store.checkpoint();
+                }
+            }
+        }
+        assertEquals(describe(live), describe(reopen()));
+    }
+
+    @Test
+    void asyncWritesThroughTheStoreAreLogged() throws Exception {
+        Library live = new Library();
+        try (LibraryStore store = LibraryStore.open(directory.toString(), live);
+             AsyncLibraryWriter writer = new AsyncLibraryWriter(live, store)) {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                results.add(writer.addBook(new Book("Author " + i % 7, "Title " + i % 50, 2000, Status.EXIT)));
+                if (i % 3 == 0) results.add(writer.deleteBook("Title " + i % 40));
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                result.get();
+            }
+        }
+        assertEquals(describe(live), describe(reopen()));
+    }
+
+    @Test
+    void mutationsWhoseSyncFailsAreNeverApplied() throws IOException {
+        try (LibraryStore store = LibraryStore.open(directory.toString(), new Library())) {
+            store.addBook(new Book("Frank Herbert", "Dune", 1965, Status.EXIT));
+            store.addBook(new Book("Jane Austen", "Emma", 1815, Status.EXIT));
+        }
+        // Every write to generation 0's log fails from now on, as on a disk that went bad
+        Library live = new Library();
+        LibraryStore.LogFactory failing = path -> path.endsWith("mutations-0.log")
+                ? new MutationLog(FileChannel.open(path, StandardOpenOption.READ))
+                : new MutationLog(path);
+        try (LibraryStore store = LibraryStore.open(directory.toString(), live, failing)) {
+            List<String> before = describe(live);
+            assertThrows(IOException.class, () -> store.addBook(new Book("Ursula K. Le Guin", "Lathe", 1971, Status.EXIT)));
+            assertThrows(IOException.class, () -> store.deleteBook("Dune"));
+            assertThrows(IOException.class, () -> store.checkout("Emma"));
+            assertThrows(IOException.class, () -> store.sortBooksByYear());
+            assertEquals(before, describe(live));
+            assertEquals(before, describe(reopen()));
+
+            // A checkpoint starts a generation with a working log
+            store.checkpoint();
+            store.checkout("Emma");
+        }
+        assertEquals(List.of("Dune by Frank Herbert (1965, EXIT)", "Emma by Jane Austen (1815, BORROWED)"), describe(live));
+        assertEquals(describe(live), describe(reopen()));
+    }
+
+    @Test
+    void syncedLinesSurviveARestartUntilTheLibraryChanges() throws IOException {
+        Path file = directory.resolve("books.csv");
+        String store = directory.resolve("store").toString();
+        Files.write(file, List.of("Frank Herbert,Dune,1965,EXIT", "Jane Austen,Emma,1815,EXIT",
+                "Jane Austen,Persuasion,1817,BORROWED"));
+        Library synced = new Library();
+        try (LibraryStore first = LibraryStore.open(store, synced)) {
+            CatalogSync.Result result = new CatalogSync(synced, first).sync(file.toString());
+            assertTrue(result.fullComparison);
+            assertEquals(3, result.inserted);
+        }
+
+        Files.write(file, List.of("Frank Herbert,Dune,1965,BORROWED", "Jane Austen,Persuasion,1817,BORROWED",
+                "Ursula K. Le Guin,The Lathe of Heaven,1971,EXIT"));
+        Library restarted = new Library();
+        try (LibraryStore second = LibraryStore.open(store, restarted)) {
+            CatalogSync.Result result = new CatalogSync(restarted, second).sync(file.toString());
+            assertFalse(result.fullComparison);
+            assertEquals(1, result.inserted);
+            assertEquals(1, result.deleted);
+            assertEquals(1, result.statusChanged);
+            assertEquals(1, result.unchanged);
+        }
+        // Logged like any other change rather than written as a new base
+        assertFalse(Files.exists(directory.resolve("store").resolve("base-1.snap")));
+        assertEquals(describe(restarted), describe(reopen(store)));
+
+        Library changed = new Library();
+        try (LibraryStore third = LibraryStore.open(store, changed)) {
+            third.deleteBook("Dune");
+            CatalogSync.Result result = new CatalogSync(changed, third).sync(file.toString());
+            assertTrue(result.fullComparison);
+            assertEquals(1, result.inserted);
+        }
+        assertEquals(describe(restarted).size(), describe(changed).size());
+        assertEquals(describe(changed), describe(reopen(store)));
+    }
+
+    @Test
+    void badCountsInASnapshotWithAValidChecksumAreReportedAsCorruption() throws IOException {
+        Library library = new Library();
+        library.addBook(new Book("Frank Herbert", "Dune", 1965, Status.EXIT));
+        library.addBook(new Book("Jane Austen", "Emma", 1815, Status.EXIT));
+        Path snapshot = directory.resolve("library.snap");
+        library.saveSnapshot(snapshot.toString());
+        byte[] image = Files.readAllBytes(snapshot);
+
+        // Book count, author count and the first author's length, each negative and huge
+        for (int offset : new int[]{8, 12, 16}) {
+            for (int value : new int[]{-1, Integer.MAX_VALUE}) {
+                byte[] corrupt = image.clone();
+                ByteBuffer bytes = ByteBuffer.wrap(corrupt);
+                bytes.putInt(offset, value);
+                CRC32 crc = new CRC32();
+                crc.update(corrupt, 0, corrupt.length - 8);
+                bytes.putLong(corrupt.length - 8, crc.getValue());
+                Files.write(snapshot, corrupt);
+                assertThrows(IOException.class, () -> new Library().loadSnapshot(snapshot.toString()),
+                        "value " + value + " at offset " + offset);
+            }
+        }
+    }
+
+    private Library reopen() throws IOException {
+        return reopen(directory.toString());
+    }
+
+    private static Library reopen(String store) throws IOException {
+        Library library = new Library();
+        LibraryStore.open(store, library).close();
+        return library;
+    }
+
+    // Every book in list order, with all that tells copies of a title apart
+    static List<String> describe(Library library) {
+        List<String> books = new ArrayList<>();
+        library.forEachBook(book -> books.add(book.getTitle() + " by " + book.getAuthor()
+                + " (" + book.getYearOfPublish() + ", " + book.getStatus().name() + ")"));
+        return books;
+    }
+}
@@ -0,0 +1,124 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Crash consistency: a log cut off or damaged at any byte must replay to the library as it
+// was after the last record that is still whole, and lose nothing before it
+class MutationLogTest {
+    @TempDir
+    Path directory;
+
+    private byte[] image;
+    // After every logged mutation: where its record ends and what the library looked like
+    private final List<Long> recordEnds = new ArrayList<>();
+    private final List<List<String>> states = new ArrayList<>();
+
+    // One record per mutation, so every record boundary is a state the library was in
+    @BeforeEach
+    void writeLog() throws IOException {
+        Path source = Files.createDirectory(directory.resolve("source"));
+        Library library = new Library();
+        Random random = new Random(42);
+        recordEnds.add(0L);
+        states.add(List.of());
+        try (LibraryStore store = LibraryStore.open(source.toString(), library)) {
+            for (int i = 0; i < 120; i++) {
+                String title = "Title " + random.nextInt(6);
+                switch (random.nextInt(7)) {
+                    case 0:
+                    case 1:
+                        store.addBook(new Book("Author " + random.nextInt(2), title, 2000 + random.nextInt(3),
+                                Status.values()[random.nextInt(Status.values().length)]));
+                        break;
+                    case 2:
+                        if (store.checkout(title) == null) continue;
+                        break;
+                    case 3:
+                        if (store.checkin(title) == null) continue;
+                        break;
+                    case 4:
+                        store.updateStatus(title, Status.values()[random.nextInt(Status.values().length)]);
+                        break;
+                    case 5:
+                        store.sortBooksByYear();
+                        break;
+                    default:
+                        store.deleteBook(title);
+                }
+                recordEnds.add(Files.size(source.resolve("mutations-0.log")));
+                states.add(LibraryStoreTest.describe(library));
+            }
+        }
+        image = Files.readAllBytes(source.resolve("mutations-0.log"));
+    }
+
+    @Test
+    void logCutOffAtAnyByteReplaysItsWholeRecords() throws IOException {
+        for (int length = 0; length <= image.length; length++) {
+            int whole = wholeRecords(length);
+            Path log = writeGeneration(Arrays.copyOf(image, length));
+            assertEquals(states.get(whole), reopen(), "log cut off after " + length + " bytes");
+            // The torn tail is gone, so later appends follow the last whole record
+            assertEquals((long) recordEnds.get(whole), Files.size(log), "log cut off after " + length + " bytes");
+        }
+    }
+
+    @Test
+    void damagedByteStopsReplayAtTheRecordItIsIn() throws IOException {
+        for (int offset = 0; offset < image.length; offset++) {
+            byte[] damaged = image.clone();
+            damaged[offset] ^= 0x20;
+            // Records before the damaged one are whole; it and everything after are cut off
+            int before = wholeRecords(offset);
+            writeGeneration(damaged);
+            assertEquals(states.get(before), reopen(), "byte " + offset + " damaged");
+        }
+    }
+
+    @Test
+    void failedSyncIsNeverReportedDurable() throws IOException {
+        Path path = Files.createFile(directory.resolve("mutations-0.log"));
+        // Every write to a read-only channel fails
+        try (MutationLog log = new MutationLog(FileChannel.open(path, StandardOpenOption.READ))) {
+            long sequence = log.appendDelete("Dune");
+            assertThrows(IOException.class, () -> log.sync(sequence));
+            assertThrows(IOException.class, () -> log.sync(sequence));
+            assertThrows(IOException.class, () -> log.appendDelete("Emma"));
+        }
+    }
+
+    // Number of records that end at or before the offset
+    private int wholeRecords(long offset) {
+        int whole = 0;
+        while (whole + 1 < recordEnds.size() && recordEnds.get(whole + 1) <= offset) {
+            whole++;
+        }
+        return whole;
+    }
+
+    private Path writeGeneration(byte[] log) throws IOException {
+        Path path = directory.resolve("mutations-0.log");
+        Files.write(path, log);
+        return path;
+    }
+
+    private List<String> reopen() throws IOException {
+        Library library = new Library();
+        LibraryStore.open(directory.toString(), library).close();
+        return LibraryStoreTest.describe(library);
+    }
+}
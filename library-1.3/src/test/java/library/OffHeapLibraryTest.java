@@ -0,0 +1,67 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A catalog that was not closed must reopen to answers that end and fit what was asked,
+// whatever state its tables were left in
+class OffHeapLibraryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void catalogLeftOpenReopensWithRebuiltTables() throws IOException {
+        Path live = Files.createDirectory(directory.resolve("live"));
+        Path crashed = Files.createDirectory(directory.resolve("crashed"));
+        try (OffHeapLibrary library = OffHeapLibrary.open(live.toString())) {
+            library.addBook(new Book("Frank Herbert", "Dune", 1965, Status.EXIT));
+            library.addBook(new Book("Jane Austen", "Emma", 1815, Status.EXIT));
+            library.addBook(new Book("frank herbert", "Dune Messiah", 1969, Status.BORROWED));
+            library.addBook(new Book("Jane Austen", "Persuasion", 1817, Status.EXIT));
+            library.deleteBook("Emma");
+            library.addBook(new Book("Jane Austen", "Dune", 2001, Status.BANNED));
+            // What a crash would leave on disk: every page as the page cache holds it, and
+            // no clean flag
+            try (var files = Files.list(live)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+                }
+            }
+        }
+        // Tables whose slots all point at records that do not exist
+        byte[] torn = new byte[(int) Files.size(crashed.resolve("titles"))];
+        Arrays.fill(torn, (byte) 0x7F);
+        Files.write(crashed.resolve("titles"), torn);
+        Files.write(crashed.resolve("authors"), torn);
+
+        for (int reopen = 0; reopen < 2; reopen++) {
+            try (OffHeapLibrary library = OffHeapLibrary.open(crashed.toString())) {
+                assertEquals(4, library.size());
+                assertEquals("Frank Herbert", library.searchBookByTitle("dune").getAuthor());
+                assertNull(library.searchBookByTitle("Emma"));
+                assertEquals(List.of("Dune", "Dune Messiah"), titles(library.getBooksByAuthor("FRANK HERBERT")));
+                // Chained in record order, where the later Dune reused the deleted Emma's record
+                assertEquals(List.of("Dune", "Persuasion"), titles(library.getBooksByAuthor("Jane Austen")));
+                library.addBook(new Book("Ursula K. Le Guin", "Lathe", 1971, Status.EXIT));
+                library.deleteBook("Lathe");
+            }
+        }
+    }
+
+    private static List<String> titles(List<Book> books) {
+        List<String> titles = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+}
@@ -1,3 +1,5 @@
+package library;
+
 import java.util.*;
 
 enum Status {
@@ -55,9 +57,13 @@ class Book {
 
 class Library {
     private List<Book> books = new ArrayList<>();
+    private Map<String, List<Book>> titleIndex = new HashMap<>();
+    private Map<String, List<Book>> authorIndex = new HashMap<>();
 
     public void addBook(Book book) {
         books.add(book);
+        index(titleIndex, book.getTitle(), book);
+        index(authorIndex, book.getAuthor(), book);
     }
 
     public void displayBooks() {
@@ -69,19 +75,43 @@ class Library {
     }
 
     public Book searchBookByTitle(String title) {
-        return books.stream().filter(book -> book.getTitle().equalsIgnoreCase(title)).findFirst().orElse(null);
+        return titleIndex.getOrDefault(foldCase(title), List.of()).stream().findFirst().orElse(null);
     }
 
     public List<Book> getBooksByAuthor(String author) {
-        return books.stream().filter(book -> book.getAuthor().equalsIgnoreCase(author)).toList();
+        return List.copyOf(authorIndex.getOrDefault(foldCase(author), List.of()));
     }
 
     public boolean deleteBook(String title) {
-        return books.removeIf(book -> book.getTitle().equalsIgnoreCase(title));
+        List<Book> removed = titleIndex.remove(foldCase(title));
+        if (removed == null) {
+            return false;
+        }
+        Set<Book> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        gone.addAll(removed);
+        books.removeIf(gone::contains);
+        removed.forEach(book -> authorIndex.computeIfPresent(foldCase(book.getAuthor()), (key, bucket) -> {
+            bucket.remove(book);
+            return bucket.isEmpty() ? null : bucket;
+        }));
+        return true;
     }
 
     public void sortBooksByYear() {
         books.sort(Comparator.comparingInt(Book::getYearOfPublish));
+        titleIndex.values().forEach(bucket -> bucket.sort(Comparator.comparingInt(Book::getYearOfPublish)));
+        authorIndex.values().forEach(bucket -> bucket.sort(Comparator.comparingInt(Book::getYearOfPublish)));
+    }
+
+    private static void index(Map<String, List<Book>> index, String key, Book book) {
+        index.computeIfAbsent(foldCase(key), k -> new ArrayList<>()).add(book);
+    }
+
+    // Same per-character folding that String.equalsIgnoreCase applies
+    private static String foldCase(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        s.codePoints().forEach(cp -> sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp))));
+        return sb.toString();
     }
 }
 